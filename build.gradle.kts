@@ -51,6 +51,7 @@ dependencies {
 	// Утилиты
 	implementation("io.github.microutils:kotlin-logging-jvm:3.0.5")
 	implementation("com.github.vladimir-bukhtoyarov:bucket4j-core:7.6.0")
+	implementation("com.github.ben-manes.caffeine:caffeine")
 
 	// Lombok
 	compileOnly("org.projectlombok:lombok")
@@ -62,6 +63,13 @@ dependencies {
 	testImplementation("io.projectreactor:reactor-test")
 	testImplementation("org.mockito:mockito-core:5.3.1")
 	testImplementation("org.mockito.kotlin:mockito-kotlin:5.0.0")
+	testRuntimeOnly("com.h2database:h2")
+	testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+	// BlockHound - только для разработки (bootRun) и тестов, в bootJar не попадает
+	compileOnly("io.projectreactor.tools:blockhound:1.0.8.RELEASE")
+	developmentOnly("io.projectreactor.tools:blockhound:1.0.8.RELEASE")
+	testImplementation("io.projectreactor.tools:blockhound:1.0.8.RELEASE")
 
 	// Документация API
 	implementation("org.springdoc:springdoc-openapi-starter-webmvc-ui:2.3.0")
@@ -76,6 +84,12 @@ tasks.withType<KotlinCompile> {
 
 tasks.withType<Test> {
 	useJUnitPlatform()
+	// Необходимо для BlockHound на JDK 13+
+	jvmArgs("-XX:+AllowRedefinitionToAddDeleteMethods")
+}
+
+tasks.bootRun {
+	jvmArgs("-XX:+AllowRedefinitionToAddDeleteMethods")
 }
 
 // Настройка Flyway миграций
@@ -1,20 +1,29 @@
 package com.chatassist.cozetalk.bot;
 
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import com.chatassist.cozetalk.bot.dispatch.UpdateDeduplicator;
+import com.chatassist.cozetalk.bot.dispatch.UpdateDispatcher;
 import com.chatassist.cozetalk.bot.handler.CallbackQueryHandler;
 import com.chatassist.cozetalk.bot.handler.CommandHandler;
 import com.chatassist.cozetalk.bot.handler.MessageHandler;
+import com.chatassist.cozetalk.bot.sender.OutboundMessageScheduler;
+import com.chatassist.cozetalk.bot.sender.OutboundMessageScheduler.Priority;
 import com.chatassist.cozetalk.config.BotConfig;
+import com.chatassist.cozetalk.domain.dto.UpdateContext;
+import com.chatassist.cozetalk.service.SubscriptionService;
 import com.chatassist.cozetalk.service.UserService;
 
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
 
 @Component
 @Slf4j
@@ -25,18 +34,30 @@ public class TelegramBot extends TelegramLongPollingBot {
     private final MessageHandler messageHandler;
     private final CallbackQueryHandler callbackQueryHandler;
     private final UserService userService;
+    private final SubscriptionService subscriptionService;
+    private final UpdateDispatcher updateDispatcher;
+    private final UpdateDeduplicator updateDeduplicator;
+    private final OutboundMessageScheduler outboundMessageScheduler;
 
     public TelegramBot(BotConfig botConfig,
                        CommandHandler commandHandler,
                        MessageHandler messageHandler,
                        CallbackQueryHandler callbackQueryHandler,
-                       UserService userService) {
+                       UserService userService,
+                       SubscriptionService subscriptionService,
+                       UpdateDispatcher updateDispatcher,
+                       UpdateDeduplicator updateDeduplicator,
+                       OutboundMessageScheduler outboundMessageScheduler) {
         super(botConfig.getToken());
         this.botConfig = botConfig;
         this.commandHandler = commandHandler;
         this.messageHandler = messageHandler;
         this.callbackQueryHandler = callbackQueryHandler;
         this.userService = userService;
+        this.subscriptionService = subscriptionService;
+        this.updateDispatcher = updateDispatcher;
+        this.updateDeduplicator = updateDeduplicator;
+        this.outboundMessageScheduler = outboundMessageScheduler;
     }
 
     @Override
@@ -46,43 +67,119 @@ public class TelegramBot extends TelegramLongPollingBot {
 
     @Override
     public void onUpdateReceived(Update update) {
-        try {
-            if (update.hasMessage() && update.getMessage().hasText()) {
-                handleTextMessage(update.getMessage());
-            } else if (update.hasCallbackQuery()) {
-                handleCallbackQuery(update.getCallbackQuery());
-            }
-        } catch (Exception e) {
-            log.error("Ошибка обработки обновления: {}", e.getMessage(), e);
-            sendErrorMessage(update);
+        submit(update);
+    }
+
+    /**
+     * Передает обновление в обработку.
+     *
+     * @param update Обновление от Telegram
+     * @return false, если диспетчер перегружен и обновление нужно доставить повторно
+     */
+    public boolean submit(Update update) {
+        return submit(update, () -> {
+        });
+    }
+
+    /**
+     * Передает обновление в обработку и сообщает о ее завершении.
+     *
+     * @param update Обновление от Telegram
+     * @param onDone Вызывается после обработки обновления, а также если обновление
+     *               пропущено, вытеснено или отброшено из очереди; не вызывается для отклоненного обновления
+     * @return false, если диспетчер перегружен и обновление нужно доставить повторно
+     */
+    public boolean submit(Update update, Runnable onDone) {
+        // Повторная доставка того же обновления (таймауты webhook, рестарт polling)
+        if (updateDeduplicator.isDuplicate(update.getUpdateId())) {
+            onDone.run();
+            return true;
         }
+
+        Long chatId = resolveChatId(update);
+        if (chatId == null) {
+            log.debug("Пропущено обновление без чата: {}", update.getUpdateId());
+            onDone.run();
+            return true;
+        }
+
+        // Обработка уходит в диспетчер: параллельно между чатами, по порядку внутри чата
+        // Очередь чата занята до доставки ответа, а не только до запуска обработки
+        Supplier<CompletionStage<?>> task = () -> processUpdate(update)
+                .doFinally(signal -> onDone.run())
+                .toFuture();
+        if (!updateDispatcher.dispatch(chatId, !isCommand(update), task, onDone)) {
+            // Отклоненное обновление не должно считаться повтором при следующей доставке
+            updateDeduplicator.forget(update.getUpdateId());
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isCommand(Update update) {
+        return update.hasMessage()
+                && update.getMessage().hasText()
+                && update.getMessage().getText().startsWith("/");
     }
 
-    private void handleTextMessage(Message message) {
+    /**
+     * @return Mono, завершающийся после окончания обработки обновления, включая доставку ответа
+     */
+    private Mono<Void> processUpdate(Update update) {
+        return Mono.defer(() -> {
+                    if (update.hasMessage() && update.getMessage().hasText()) {
+                        return handleTextMessage(update.getMessage());
+                    } else if (update.hasCallbackQuery()) {
+                        handleCallbackQuery(update.getCallbackQuery());
+                    }
+                    return Mono.<Void>empty();
+                })
+                .onErrorResume(e -> {
+                    log.error("Ошибка обработки обновления: {}", e.getMessage(), e);
+                    sendErrorMessage(update);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> handleTextMessage(Message message) {
         Long chatId = message.getChatId();
         String text = message.getText();
 
-        // Регистрация пользователя, если первый раз
+        // Регистрация пользователя, если первый раз (для известных пользователей без запроса к БД)
         userService.registerUserIfNotExists(message.getFrom());
 
+        // Пользователь и подписка разрешаются один раз на обновление
+        UpdateContext context = createContext(chatId, message.getFrom().getId());
+
         if (text.startsWith("/")) {
-            commandHandler.handleCommand(message);
-        } else {
-            messageHandler.handleMessage(message);
+            commandHandler.handleCommand(message, context);
+            return Mono.empty();
         }
+        return messageHandler.handleMessage(message, context);
     }
 
     private void handleCallbackQuery(CallbackQuery callbackQuery) {
         callbackQueryHandler.handleCallbackQuery(callbackQuery);
     }
 
-    private void sendErrorMessage(Update update) {
-        Long chatId;
+    private UpdateContext createContext(Long chatId, Long telegramId) {
+        return new UpdateContext(chatId, telegramId,
+                subscriptionService.getSnapshot(telegramId).orElse(null),
+                subscriptionService.getRequestsUsedToday(telegramId));
+    }
+
+    private Long resolveChatId(Update update) {
         if (update.hasMessage()) {
-            chatId = update.getMessage().getChatId();
-        } else if (update.hasCallbackQuery()) {
-            chatId = update.getCallbackQuery().getMessage().getChatId();
-        } else {
+            return update.getMessage().getChatId();
+        } else if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            return update.getCallbackQuery().getMessage().getChatId();
+        }
+        return null;
+    }
+
+    private void sendErrorMessage(Update update) {
+        Long chatId = resolveChatId(update);
+        if (chatId == null) {
             return;
         }
 
@@ -90,10 +187,10 @@ public class TelegramBot extends TelegramLongPollingBot {
         message.setChatId(chatId);
         message.setText("Произошла ошибка при обработке вашего запроса. Пожалуйста, попробуйте позже.");
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Не удалось отправить сообщение об ошибке: {}", e.getMessage(), e);
-        }
+        outboundMessageScheduler.execute(chatId, message, Priority.NORMAL)
+                .exceptionally(e -> {
+                    log.error("Не удалось отправить сообщение об ошибке: {}", e.getMessage(), e);
+                    return null;
+                });
     }
 }
\ No newline at end of file
@@ -0,0 +1,263 @@
+package com.chatassist.cozetalk.bot.dispatch;
+
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import com.chatassist.cozetalk.bot.TelegramBot;
+import com.chatassist.cozetalk.config.BotConfig;
+import com.chatassist.cozetalk.repository.BotPollingStateRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Получатель обновлений в режиме long polling.
+ * Запрашивает следующую пачку обновлений сразу после передачи текущей в {@link UpdateDispatcher},
+ * не дожидаясь ее обработки. Запрашивает только обрабатываемые типы обновлений.
+ * <p>
+ * Telegram подтверждаются и в базе данных сохраняются только обновления, обработка которых
+ * завершена: offset запроса - это первое незавершенное обновление. Поэтому при падении
+ * принятые, но не обработанные обновления будут получены повторно. Уже переданные
+ * в обработку обновления, пришедшие повторно, пропускаются.
+ */
+@Component
+@Slf4j
+public class PollingUpdateReceiver implements SmartLifecycle {
+
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final TelegramBot telegramBot;
+    private final BotConfig botConfig;
+    private final UpdateDispatcher updateDispatcher;
+    private final BotPollingStateRepository pollingStateRepository;
+
+    private final int limit;
+    private final int timeoutSeconds;
+    private final List<String> allowedUpdates;
+    private final int maxPendingUpdates;
+
+    private volatile boolean running;
+    private Thread pollingThread;
+    private long persistedOffset;
+
+    /** Обновления, переданные в обработку: update_id -> обработка завершена */
+    private final TreeMap<Integer, Boolean> inFlight = new TreeMap<>();
+    /** Следующее еще не переданное в обработку обновление, защищено inFlight */
+    private long nextOffset;
+
+    public PollingUpdateReceiver(TelegramBot telegramBot,
+                                 BotConfig botConfig,
+                                 UpdateDispatcher updateDispatcher,
+                                 BotPollingStateRepository pollingStateRepository,
+                                 @Value("${bot.polling.limit:100}") int limit,
+                                 @Value("${bot.polling.timeout-seconds:50}") int timeoutSeconds,
+                                 @Value("${bot.polling.allowed-updates:message,callback_query}") List<String> allowedUpdates,
+                                 @Value("${bot.polling.max-pending-updates:1000}") int maxPendingUpdates) {
+        this.telegramBot = telegramBot;
+        this.botConfig = botConfig;
+        this.updateDispatcher = updateDispatcher;
+        this.pollingStateRepository = pollingStateRepository;
+        this.limit = limit;
+        this.timeoutSeconds = timeoutSeconds;
+        this.allowedUpdates = allowedUpdates;
+        this.maxPendingUpdates = maxPendingUpdates;
+    }
+
+    @Override
+    public void start() {
+        if (botConfig.isWebhookMode()) {
+            log.info("Бот работает через webhook, long polling не запускается");
+            return;
+        }
+
+        try {
+            // Long polling и webhook взаимоисключающие
+            telegramBot.clearWebhook();
+        } catch (TelegramApiException e) {
+            log.warn("Не удалось удалить webhook перед запуском long polling: {}", e.getMessage());
+        }
+
+        long offset = pollingStateRepository.findById(botConfig.getUsername())
+                .map(state -> state.getLastUpdateId() + 1)
+                .orElse(0L);
+        synchronized (inFlight) {
+            nextOffset = offset;
+        }
+        persistedOffset = offset;
+        log.info("Запуск long polling со смещения {}", offset);
+
+        running = true;
+        pollingThread = new Thread(this::pollLoop, "telegram-polling");
+        pollingThread.setDaemon(true);
+        pollingThread.start();
+    }
+
+    private void pollLoop() {
+        long backoffMs = 500;
+
+        while (running) {
+            try {
+                awaitDispatcherCapacity();
+
+                GetUpdates request = new GetUpdates();
+                request.setOffset((int) confirmedOffset());
+                request.setLimit(limit);
+                request.setTimeout(timeoutSeconds);
+                request.setAllowedUpdates(allowedUpdates);
+
+                // Вызов с offset подтверждает Telegram все предыдущие обновления,
+                // поэтому offset не выходит за первое незавершенное обновление
+                List<Update> updates = telegramBot.execute(request);
+                backoffMs = 500;
+
+                if (updates == null || updates.isEmpty()) {
+                    continue;
+                }
+
+                if (submitAll(updates) == 0) {
+                    // Пачка целиком из уже переданных обновлений: ждем, пока завершится
+                    // обработка, задерживающая подтверждение, чтобы не повторять запрос впустую
+                    Thread.sleep(100);
+                }
+                persistOffset();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.error("Ошибка получения обновлений, повтор через {} мс: {}", backoffMs, e.getMessage(), e);
+                sleepQuietly(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    /**
+     * Передает в обработку обновления, которые еще не передавались.
+     * При отказе диспетчера пачка прерывается: отклоненное и следующие обновления
+     * будут получены повторно, так как offset не продвинулся дальше них.
+     *
+     * @return Количество переданных обновлений
+     */
+    private int submitAll(List<Update> updates) throws InterruptedException {
+        int submitted = 0;
+        for (Update update : updates) {
+            int updateId = update.getUpdateId();
+            synchronized (inFlight) {
+                if (updateId < nextOffset) {
+                    continue;
+                }
+                inFlight.put(updateId, Boolean.FALSE);
+                nextOffset = updateId + 1L;
+            }
+            if (!telegramBot.submit(update, () -> complete(updateId))) {
+                synchronized (inFlight) {
+                    inFlight.remove(updateId);
+                    nextOffset = updateId;
+                }
+                log.warn("Диспетчер перегружен, обновление {} будет получено повторно", updateId);
+                Thread.sleep(500);
+                break;
+            }
+            submitted++;
+        }
+        return submitted;
+    }
+
+    private void complete(int updateId) {
+        synchronized (inFlight) {
+            inFlight.replace(updateId, Boolean.TRUE);
+            // Завершенные обновления в начале больше не задерживают подтверждение
+            while (!inFlight.isEmpty() && inFlight.firstEntry().getValue()) {
+                inFlight.pollFirstEntry();
+            }
+            inFlight.notifyAll();
+        }
+    }
+
+    /**
+     * @return Первое обновление, обработка которого не завершена
+     */
+    private long confirmedOffset() {
+        synchronized (inFlight) {
+            return inFlight.isEmpty() ? nextOffset : inFlight.firstKey();
+        }
+    }
+
+    private synchronized void persistOffset() {
+        long offset = confirmedOffset();
+        if (offset > persistedOffset) {
+            pollingStateRepository.saveLastUpdateId(botConfig.getUsername(), offset - 1);
+            persistedOffset = offset;
+        }
+    }
+
+    /**
+     * Не запрашивает новые обновления, пока диспетчер перегружен
+     * или слишком много обновлений ожидает подтверждения.
+     */
+    private void awaitDispatcherCapacity() throws InterruptedException {
+        while (running && updateDispatcher.getQueuedUpdates() > maxPendingUpdates) {
+            Thread.sleep(100);
+        }
+        synchronized (inFlight) {
+            while (running && inFlight.size() >= maxPendingUpdates) {
+                inFlight.wait(100);
+            }
+        }
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (pollingThread != null) {
+            pollingThread.interrupt();
+            try {
+                pollingThread.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Сохраняется только смещение обработанных обновлений, поэтому сначала
+        // дожидаемся обработки уже полученных
+        if (!updateDispatcher.awaitIdle(TimeUnit.SECONDS.toMillis(30))) {
+            log.warn("Не все полученные обновления обработаны, они будут получены повторно");
+        }
+        try {
+            persistOffset();
+        } catch (Exception e) {
+            log.error("Не удалось сохранить смещение long polling: {}", e.getMessage(), e);
+        }
+        log.info("Long polling остановлен, последнее смещение {}", confirmedOffset());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Останавливается раньше диспетчера, чтобы он успел обработать уже полученные обновления.
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 1;
+    }
+}
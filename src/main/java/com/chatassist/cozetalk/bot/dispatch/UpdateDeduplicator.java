@@ -0,0 +1,86 @@
+package com.chatassist.cozetalk.bot.dispatch;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.chatassist.cozetalk.util.LongHashSet;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Окно дедупликации обновлений по update_id.
+ * Хранит последние N идентификаторов в кольцевом буфере и множестве на открытой адресации,
+ * поэтому повторная доставка обновления отбрасывается за O(1) без обращения к базе данных.
+ */
+@Component
+@Slf4j
+public class UpdateDeduplicator {
+
+    private final long[] ring;
+    private final LongHashSet seen;
+    private int head;
+    private int filled;
+
+    private final Counter duplicateCounter;
+
+    public UpdateDeduplicator(MeterRegistry meterRegistry,
+                              @Value("${bot.dedup.window-size:4096}") int windowSize) {
+        this.ring = new long[windowSize];
+        this.seen = new LongHashSet(windowSize);
+
+        this.duplicateCounter = Counter.builder("bot.dedup.duplicates")
+                .description("Повторно доставленные обновления, отброшенные дедупликацией")
+                .register(meterRegistry);
+        Gauge.builder("bot.dedup.window.size", ring, r -> r.length)
+                .description("Размер окна дедупликации обновлений")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Регистрирует update_id и проверяет, не встречался ли он в текущем окне.
+     *
+     * @param updateId ID обновления Telegram
+     * @return true, если обновление уже обрабатывалось
+     */
+    public boolean isDuplicate(Integer updateId) {
+        if (updateId == null) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (seen.contains(updateId)) {
+                duplicateCounter.increment();
+                log.debug("Отброшено повторное обновление {}", updateId);
+                return true;
+            }
+
+            if (filled == ring.length) {
+                seen.remove(ring[head]);
+            } else {
+                filled++;
+            }
+            ring[head] = updateId;
+            head = (head + 1) % ring.length;
+            seen.add(updateId);
+            return false;
+        }
+    }
+
+    /**
+     * Убирает update_id из окна, чтобы повторная доставка обновления была обработана.
+     * Позиция в кольцевом буфере остается занятой до вытеснения.
+     *
+     * @param updateId ID обновления Telegram
+     */
+    public void forget(Integer updateId) {
+        if (updateId == null) {
+            return;
+        }
+        synchronized (this) {
+            seen.remove(updateId);
+        }
+    }
+}
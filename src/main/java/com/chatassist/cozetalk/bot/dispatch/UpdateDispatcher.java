@@ -0,0 +1,410 @@
+package com.chatassist.cozetalk.bot.dispatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Диспетчер входящих обновлений Telegram.
+ * Обрабатывает обновления разных чатов параллельно на ограниченном пуле потоков,
+ * сохраняя строгий порядок обработки обновлений внутри одного чата: следующее обновление
+ * чата запускается после завершения асинхронного результата предыдущего.
+ * Число ожидающих обновлений ограничено и для каждого чата, и в целом; общий лимит учитывает
+ * и обрабатываемые обновления, поэтому ограничивает и число одновременных вызовов нейромодели. При переполнении
+ * применяется {@link OverflowPolicy}; отклоненное обновление возвращается вызывающему коду,
+ * чтобы он мог сообщить о перегрузке источнику (webhook отвечает 429, и Telegram повторяет доставку).
+ * При остановке новые обновления не принимаются, а уже принятые дообрабатываются.
+ */
+@Component
+@Slf4j
+public class UpdateDispatcher {
+
+    /**
+     * Поведение при переполнении очереди.
+     */
+    public enum OverflowPolicy {
+        /** Отклонить новое обновление, Telegram доставит его повторно */
+        REJECT,
+        /**
+         * Вытеснить самое старое ожидающее обновление, не являющееся командой:
+         * при переполнении очереди чата - из этого чата, при переполнении общей очереди - из любого чата
+         */
+        DROP_OLDEST_NON_COMMAND
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<Long, ChatLane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedUpdates = new AtomicInteger();
+    // Ожидающие задачи всех чатов, которые можно вытеснить, в порядке поступления.
+    // Источник истины - очереди чатов: задача вытеснена, только если удалена из очереди своего чата
+    private final LinkedHashSet<QueuedTask> droppableTasks = new LinkedHashSet<>();
+    private final int maxQueuedPerChat;
+    private final int maxQueued;
+    private final OverflowPolicy overflowPolicy;
+    private volatile boolean accepting = true;
+
+    private final Timer waitTimer;
+    private final Counter rejectedCounter;
+    private final Counter droppedCounter;
+
+    public UpdateDispatcher(MeterRegistry meterRegistry,
+                            @Value("${bot.dispatcher.parallelism:16}") int parallelism,
+                            @Value("${bot.dispatcher.max-queued-per-chat:20}") int maxQueuedPerChat,
+                            @Value("${bot.dispatcher.max-queued:1000}") int maxQueued,
+                            @Value("${bot.dispatcher.overflow-policy:REJECT}") OverflowPolicy overflowPolicy) {
+        this.maxQueuedPerChat = maxQueuedPerChat;
+        this.maxQueued = maxQueued;
+        this.overflowPolicy = overflowPolicy;
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("update-dispatcher-"));
+
+        this.waitTimer = Timer.builder("bot.dispatcher.wait")
+                .description("Время ожидания обновления в очереди чата")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("bot.dispatcher.rejected")
+                .description("Обновления, отклоненные из-за переполнения очереди или остановки")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("bot.dispatcher.dropped")
+                .description("Ожидавшие обновления, вытесненные более новыми")
+                .register(meterRegistry);
+        Gauge.builder("bot.dispatcher.queued", queuedUpdates, AtomicInteger::get)
+                .description("Количество обновлений, ожидающих обработки или обрабатываемых")
+                .register(meterRegistry);
+        Gauge.builder("bot.dispatcher.active.chats", lanes, ConcurrentHashMap::size)
+                .description("Количество чатов с необработанными обновлениями")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ставит задачу в очередь чата. Задачи одного чата выполняются строго по очереди,
+     * задачи разных чатов - параллельно.
+     *
+     * @param chatId ID чата
+     * @param droppable Можно ли вытеснить задачу при переполнении (обновление не является командой)
+     * @param task Задача обработки обновления; очередь чата занята до завершения ее результата
+     * @param onDrop Вызывается, если принятая задача вытеснена по {@link OverflowPolicy} и не будет выполнена
+     * @return true, если задача принята, false, если очередь переполнена или диспетчер остановлен
+     */
+    public boolean dispatch(Long chatId, boolean droppable, Supplier<CompletionStage<?>> task, Runnable onDrop) {
+        if (!accepting) {
+            return reject(chatId, "диспетчер остановлен");
+        }
+        // Место в общей очереди занимается до постановки в очередь чата
+        if (queuedUpdates.incrementAndGet() > maxQueued) {
+            QueuedTask evicted = overflowPolicy == OverflowPolicy.DROP_OLDEST_NON_COMMAND
+                    ? evictOldestDroppable()
+                    : null;
+            if (evicted == null) {
+                queuedUpdates.decrementAndGet();
+                return reject(chatId, "общая очередь переполнена (" + maxQueued + ")");
+            }
+            drop(evicted, "общая очередь переполнена");
+        }
+
+        QueuedTask queued = new QueuedTask(chatId, task, droppable, onDrop, System.nanoTime());
+        boolean[] accepted = {false};
+        boolean[] schedule = {false};
+        QueuedTask[] evicted = {null};
+
+        ChatLane lane = lanes.compute(chatId, (id, current) -> {
+            ChatLane result = current != null ? current : new ChatLane(id);
+            if (result.tasks.size() >= maxQueuedPerChat) {
+                evicted[0] = overflowPolicy == OverflowPolicy.DROP_OLDEST_NON_COMMAND
+                        ? evictOldestDroppable(result)
+                        : null;
+                if (evicted[0] == null) {
+                    return current;
+                }
+            }
+            result.tasks.addLast(queued);
+            if (droppable) {
+                synchronized (droppableTasks) {
+                    droppableTasks.add(queued);
+                }
+            }
+            accepted[0] = true;
+            if (!result.running) {
+                result.running = true;
+                schedule[0] = true;
+            }
+            return result;
+        });
+
+        if (!accepted[0]) {
+            queuedUpdates.decrementAndGet();
+            return reject(chatId, "очередь чата переполнена (" + maxQueuedPerChat + ")");
+        }
+        if (evicted[0] != null) {
+            drop(evicted[0], "очередь чата переполнена");
+        }
+
+        if (schedule[0]) {
+            return schedule(lane, queued);
+        }
+        return true;
+    }
+
+    /**
+     * Вытесняет самую старую ожидающую задачу чата, которую можно вытеснить.
+     * Вызывается внутри изменения очереди чата.
+     */
+    private QueuedTask evictOldestDroppable(ChatLane lane) {
+        Iterator<QueuedTask> iterator = lane.tasks.iterator();
+        while (iterator.hasNext()) {
+            QueuedTask candidate = iterator.next();
+            if (candidate.droppable) {
+                iterator.remove();
+                synchronized (droppableTasks) {
+                    droppableTasks.remove(candidate);
+                }
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Вытесняет самую старую ожидающую задачу среди всех чатов, которую можно вытеснить.
+     * Задача, которую очередь чата уже передала на выполнение, пропускается.
+     *
+     * @return Вытесненная задача или null, если вытеснить нечего
+     */
+    private QueuedTask evictOldestDroppable() {
+        while (true) {
+            QueuedTask candidate;
+            synchronized (droppableTasks) {
+                Iterator<QueuedTask> iterator = droppableTasks.iterator();
+                if (!iterator.hasNext()) {
+                    return null;
+                }
+                candidate = iterator.next();
+                iterator.remove();
+            }
+
+            boolean[] removed = {false};
+            lanes.computeIfPresent(candidate.chatId, (id, current) -> {
+                removed[0] = current.tasks.remove(candidate);
+                return current;
+            });
+            if (removed[0]) {
+                return candidate;
+            }
+        }
+    }
+
+    private void drop(QueuedTask evicted, String reason) {
+        // Вытесненная задача освободила свое место в очереди
+        queuedUpdates.decrementAndGet();
+        droppedCounter.increment();
+        log.warn("{}, вытеснено самое старое обновление чата {}", reason, evicted.chatId);
+        evicted.onDrop.run();
+    }
+
+    private boolean reject(Long chatId, String reason) {
+        rejectedCounter.increment();
+        log.warn("Обновление чата {} отклонено: {}", chatId, reason);
+        return false;
+    }
+
+    /**
+     * Передает очередь чата пулу. Если пул уже не принимает задачи, очередь чата сбрасывается,
+     * чтобы следующие обновления чата не ждали обработчика, который никогда не запустится.
+     * Для сброшенных задач, кроме отклоненной в вызове {@link #dispatch}, вызывается onDrop:
+     * они уже были приняты, и вызывающий код ждет их завершения.
+     *
+     * @param incoming Задача, о принятии которой сообщит возвращаемое значение, или null
+     * @return false, если пул отклонил задачу
+     */
+    private boolean schedule(ChatLane lane, QueuedTask incoming) {
+        try {
+            executor.execute(() -> runNext(lane));
+            return true;
+        } catch (RejectedExecutionException e) {
+            List<QueuedTask> discarded = new ArrayList<>();
+            lanes.computeIfPresent(lane.chatId, (id, current) -> {
+                discarded.addAll(current.tasks);
+                return null;
+            });
+            synchronized (droppableTasks) {
+                discarded.forEach(droppableTasks::remove);
+            }
+            queuedUpdates.addAndGet(-discarded.size());
+            log.error("Пул обработки отклонил задачу чата {}, отброшено обновлений: {}", lane.chatId, discarded.size());
+
+            for (QueuedTask task : discarded) {
+                if (task == incoming) {
+                    rejectedCounter.increment();
+                    continue;
+                }
+                droppedCounter.increment();
+                try {
+                    task.onDrop.run();
+                } catch (Exception dropError) {
+                    log.error("Ошибка завершения отброшенного обновления чата {}: {}",
+                            lane.chatId, dropError.getMessage(), dropError);
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Запускает одну задачу чата. Очередь чата остается занятой, пока не завершится
+     * результат задачи (например, доставка ответа нейромодели), и только затем
+     * планируется следующая задача. Поток пула при этом не ждет.
+     */
+    private void runNext(ChatLane lane) {
+        QueuedTask[] next = {null};
+        lanes.computeIfPresent(lane.chatId, (id, current) -> {
+            next[0] = current.tasks.pollFirst();
+            return current;
+        });
+
+        if (next[0] == null) {
+            // Единственная задача была вытеснена до запуска
+            afterTask(lane, false);
+            return;
+        }
+        if (next[0].droppable) {
+            synchronized (droppableTasks) {
+                droppableTasks.remove(next[0]);
+            }
+        }
+
+        waitTimer.record(System.nanoTime() - next[0].enqueuedAt, TimeUnit.NANOSECONDS);
+        CompletionStage<?> completion;
+        try {
+            completion = next[0].task.get();
+        } catch (Exception e) {
+            log.error("Ошибка обработки обновления чата {}: {}", lane.chatId, e.getMessage(), e);
+            afterTask(lane, true);
+            return;
+        }
+        completion.whenComplete((result, error) -> {
+            if (error != null) {
+                log.error("Ошибка обработки обновления чата {}: {}", lane.chatId, error.getMessage(), error);
+            }
+            afterTask(lane, true);
+        });
+    }
+
+    private void afterTask(ChatLane lane, boolean taskCompleted) {
+        if (taskCompleted) {
+            queuedUpdates.decrementAndGet();
+        }
+
+        boolean[] reschedule = {false};
+        lanes.computeIfPresent(lane.chatId, (id, current) -> {
+            if (current.tasks.isEmpty()) {
+                current.running = false;
+                return null;
+            }
+            reschedule[0] = true;
+            return current;
+        });
+
+        if (reschedule[0]) {
+            schedule(lane, null);
+        }
+    }
+
+    public int getQueuedUpdates() {
+        return queuedUpdates.get();
+    }
+
+    /**
+     * Ждет обработки всех принятых обновлений.
+     *
+     * @param timeoutMillis Максимальное время ожидания
+     * @return true, если все принятые обновления обработаны
+     */
+    public boolean awaitIdle(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!lanes.isEmpty()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Прекращает прием обновлений, дообрабатывает очереди чатов и только затем
+     * останавливает пул: задачи чатов сами планируют следующие и нуждаются в работающем пуле.
+     */
+    @PreDestroy
+    public void shutdown() {
+        accepting = false;
+        if (!awaitIdle(TimeUnit.SECONDS.toMillis(30))) {
+            log.warn("Диспетчер обновлений не успел завершить обработку, осталось {} обновлений",
+                    queuedUpdates.get());
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class ChatLane {
+        private final Long chatId;
+        private final ArrayDeque<QueuedTask> tasks = new ArrayDeque<>();
+        private boolean running;
+
+        private ChatLane(Long chatId) {
+            this.chatId = chatId;
+        }
+    }
+
+    // Не record: задачи сравниваются по ссылке при удалении из очередей
+    private static final class QueuedTask {
+        private final Long chatId;
+        private final Supplier<CompletionStage<?>> task;
+        private final boolean droppable;
+        private final Runnable onDrop;
+        private final long enqueuedAt;
+
+        private QueuedTask(Long chatId, Supplier<CompletionStage<?>> task, boolean droppable, Runnable onDrop,
+                           long enqueuedAt) {
+            this.chatId = chatId;
+            this.task = task;
+            this.droppable = droppable;
+            this.onDrop = onDrop;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
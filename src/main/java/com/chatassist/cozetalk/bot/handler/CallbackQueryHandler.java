@@ -3,12 +3,12 @@ package com.chatassist.cozetalk.bot.handler;
 import com.chatassist.cozetalk.domain.User;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import com.chatassist.cozetalk.bot.sender.OutboundMessageScheduler;
+import com.chatassist.cozetalk.bot.sender.OutboundMessageScheduler.Priority;
 import com.chatassist.cozetalk.domain.dto.PaymentResponse;
 import com.chatassist.cozetalk.domain.enums.TariffPlan;
 import com.chatassist.cozetalk.service.PaymentService;
@@ -22,7 +22,7 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class CallbackQueryHandler {
 
-    private final TelegramLongPollingBot bot;
+    private final OutboundMessageScheduler outboundMessageScheduler;
     private final UserService userService;
     private final PaymentService paymentService;
 
@@ -35,7 +35,7 @@ public class CallbackQueryHandler {
         Long userId = callbackQuery.getFrom().getId();
 
         // Отвечаем на callback, чтобы убрать загрузку на кнопке
-        answerCallbackQuery(callbackQuery.getId());
+        answerCallbackQuery(chatId, callbackQuery.getId());
 
         if (callbackData.startsWith("tariff_")) {
             handleTariffSelection(chatId, userId, callbackData.substring(7));
@@ -88,11 +88,11 @@ public class CallbackQueryHandler {
         message.setText(text);
         message.setParseMode("Markdown");
 
-        try {
-            bot.execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки ссылки на оплату: {}", e.getMessage(), e);
-        }
+        outboundMessageScheduler.execute(chatId, message, Priority.NORMAL)
+                .exceptionally(e -> {
+                    log.error("Ошибка отправки ссылки на оплату: {}", e.getMessage(), e);
+                    return null;
+                });
     }
 
     private void sendErrorMessage(Long chatId, String errorText) {
@@ -100,21 +100,21 @@ public class CallbackQueryHandler {
         message.setChatId(chatId);
         message.setText(errorText);
 
-        try {
-            bot.execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки сообщения об ошибке: {}", e.getMessage(), e);
-        }
+        outboundMessageScheduler.execute(chatId, message, Priority.NORMAL)
+                .exceptionally(e -> {
+                    log.error("Ошибка отправки сообщения об ошибке: {}", e.getMessage(), e);
+                    return null;
+                });
     }
 
-    private void answerCallbackQuery(String callbackId) {
+    private void answerCallbackQuery(Long chatId, String callbackId) {
         AnswerCallbackQuery answer = new AnswerCallbackQuery();
         answer.setCallbackQueryId(callbackId);
 
-        try {
-            bot.execute(answer);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка ответа на callback: {}", e.getMessage(), e);
-        }
+        outboundMessageScheduler.execute(chatId, answer, Priority.HIGH)
+                .exceptionally(e -> {
+                    log.error("Ошибка ответа на callback: {}", e.getMessage(), e);
+                    return null;
+                });
     }
 }
\ No newline at end of file
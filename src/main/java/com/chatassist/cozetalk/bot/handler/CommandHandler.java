@@ -1,40 +1,34 @@
 package com.chatassist.cozetalk.bot.handler;
 
-import com.chatassist.cozetalk.domain.User;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Message;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
-import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 
 import com.chatassist.cozetalk.bot.keyboard.InlineKeyboardFactory;
 import com.chatassist.cozetalk.bot.keyboard.ReplyKeyboardFactory;
-import com.chatassist.cozetalk.domain.Subscription;
+import com.chatassist.cozetalk.bot.sender.OutboundMessageScheduler;
+import com.chatassist.cozetalk.bot.sender.OutboundMessageScheduler.Priority;
+import com.chatassist.cozetalk.domain.dto.SubscriptionSnapshot;
+import com.chatassist.cozetalk.domain.dto.UpdateContext;
 import com.chatassist.cozetalk.service.PaymentService;
-import com.chatassist.cozetalk.service.SubscriptionService;
-import com.chatassist.cozetalk.service.UserService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Optional;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class CommandHandler {
 
-    private final TelegramLongPollingBot bot;
-    private final UserService userService;
-    private final SubscriptionService subscriptionService;
+    private final OutboundMessageScheduler outboundMessageScheduler;
     private final InlineKeyboardFactory inlineKeyboardFactory;
     private final ReplyKeyboardFactory replyKeyboardFactory;
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
 
-    public void handleCommand(Message message) {
+    public void handleCommand(Message message, UpdateContext context) {
         String command = message.getText();
         Long chatId = message.getChatId();
 
@@ -49,7 +43,7 @@ public class CommandHandler {
                 handleTariffCommand(chatId);
                 break;
             case "/profile":
-                handleProfileCommand(chatId, message.getFrom().getId());
+                handleProfileCommand(chatId, message.getFrom(), context);
                 break;
             default:
                 handleUnknownCommand(chatId);
@@ -70,11 +64,11 @@ public class CommandHandler {
         message.setText(welcomeText);
         message.setReplyMarkup(replyKeyboardFactory.createMainMenuKeyboard());
 
-        try {
-            bot.execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки приветственного сообщения: {}", e.getMessage(), e);
-        }
+        outboundMessageScheduler.execute(chatId, message, Priority.HIGH)
+                .exceptionally(e -> {
+                    log.error("Ошибка отправки приветственного сообщения: {}", e.getMessage(), e);
+                    return null;
+                });
     }
 
     private void handleHelpCommand(Long chatId) {
@@ -89,11 +83,11 @@ public class CommandHandler {
         message.setChatId(chatId);
         message.setText(helpText);
 
-        try {
-            bot.execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки сообщения с помощью: {}", e.getMessage(), e);
-        }
+        outboundMessageScheduler.execute(chatId, message, Priority.HIGH)
+                .exceptionally(e -> {
+                    log.error("Ошибка отправки сообщения с помощью: {}", e.getMessage(), e);
+                    return null;
+                });
     }
 
     private void handleTariffCommand(Long chatId) {
@@ -109,38 +103,33 @@ public class CommandHandler {
         message.setParseMode("Markdown");
         message.setReplyMarkup(inlineKeyboardFactory.createTariffKeyboard());
 
-        try {
-            bot.execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки сообщения с тарифами: {}", e.getMessage(), e);
-        }
+        outboundMessageScheduler.execute(chatId, message, Priority.HIGH)
+                .exceptionally(e -> {
+                    log.error("Ошибка отправки сообщения с тарифами: {}", e.getMessage(), e);
+                    return null;
+                });
     }
 
-    private void handleProfileCommand(Long chatId, Long telegramId) {
-        // Получаем информацию о пользователе и его подписке
-        User user = userService.findByTelegramId(telegramId)
-                .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
-
-        Optional<Subscription> subscriptionOpt = subscriptionService.findByUser(user);
-
+    private void handleProfileCommand(Long chatId, org.telegram.telegrambots.meta.api.objects.User telegramUser,
+                                      UpdateContext context) {
+        // Пользователь и подписка уже разрешены в контексте обновления
         StringBuilder profileText = new StringBuilder();
         profileText.append("*Ваш профиль*\n\n");
-        profileText.append("🔹 ID: ").append(user.getTelegramId()).append("\n");
-        profileText.append("🔹 Имя: ").append(user.getFirstName()).append("\n");
+        profileText.append("🔹 ID: ").append(telegramUser.getId()).append("\n");
+        profileText.append("🔹 Имя: ").append(telegramUser.getFirstName()).append("\n");
 
-        if (subscriptionOpt.isPresent()) {
-            Subscription subscription = subscriptionOpt.get();
+        if (context.hasSubscription()) {
+            SubscriptionSnapshot subscription = context.getSubscription();
 
             profileText.append("\n*Информация о подписке*\n\n");
-            profileText.append("🔹 Тариф: *").append(subscription.getTariffPlan()).append("*\n");
-            profileText.append("🔹 Дневной лимит: ").append(subscription.getDailyLimit()).append(" запросов\n");
+            profileText.append("🔹 Тариф: *").append(subscription.tariffPlan()).append("*\n");
+            profileText.append("🔹 Дневной лимит: ").append(subscription.dailyLimit()).append(" запросов\n");
             profileText.append("🔹 Осталось сегодня: ")
-                    .append(subscriptionService.getRemainingRequests(telegramId)).append(" запросов\n");
+                    .append(context.getRemainingToday()).append(" запросов\n");
             profileText.append("🔹 Действует до: ")
-                    .append(subscription.getEndDate().format(DATE_FORMATTER)).append("\n");
+                    .append(subscription.endDate().format(DATE_FORMATTER)).append("\n");
 
-            LocalDateTime now = LocalDateTime.now();
-            if (subscription.getEndDate().isBefore(now)) {
+            if (!context.hasActiveSubscription()) {
                 profileText.append("\n⚠️ *Ваша подписка истекла!* Выберите новый тариф с помощью /tariff\n");
             }
         } else {
@@ -153,11 +142,11 @@ public class CommandHandler {
         message.setText(profileText.toString());
         message.setParseMode("Markdown");
 
-        try {
-            bot.execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки информации о профиле: {}", e.getMessage(), e);
-        }
+        outboundMessageScheduler.execute(chatId, message, Priority.HIGH)
+                .exceptionally(e -> {
+                    log.error("Ошибка отправки информации о профиле: {}", e.getMessage(), e);
+                    return null;
+                });
     }
 
     private void handleUnknownCommand(Long chatId) {
@@ -167,10 +156,10 @@ public class CommandHandler {
         message.setChatId(chatId);
         message.setText(text);
 
-        try {
-            bot.execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки сообщения о неизвестной команде: {}", e.getMessage(), e);
-        }
+        outboundMessageScheduler.execute(chatId, message, Priority.HIGH)
+                .exceptionally(e -> {
+                    log.error("Ошибка отправки сообщения о неизвестной команде: {}", e.getMessage(), e);
+                    return null;
+                });
     }
 }
\ No newline at end of file
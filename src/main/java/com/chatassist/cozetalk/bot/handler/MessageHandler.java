@@ -1,65 +1,106 @@
 package com.chatassist.cozetalk.bot.handler;
 
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.ActionType;
 import org.telegram.telegrambots.meta.api.methods.send.SendChatAction;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import com.chatassist.cozetalk.bot.keyboard.InlineKeyboardFactory;
+import com.chatassist.cozetalk.bot.sender.OutboundMessageScheduler;
+import com.chatassist.cozetalk.bot.sender.OutboundMessageScheduler.Priority;
 import com.chatassist.cozetalk.domain.dto.CozeResponse;
+import com.chatassist.cozetalk.domain.dto.UpdateContext;
 import com.chatassist.cozetalk.service.CozeService;
+import com.chatassist.cozetalk.service.QuotaReservation;
 import com.chatassist.cozetalk.service.SubscriptionService;
+import com.chatassist.cozetalk.util.MessageUtils;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class MessageHandler {
 
-    private final TelegramLongPollingBot bot;
+    private final OutboundMessageScheduler outboundMessageScheduler;
     private final CozeService cozeService;
     private final SubscriptionService subscriptionService;
     private final InlineKeyboardFactory inlineKeyboardFactory;
-    public void handleMessage(Message message) {
+    private final MessageUtils messageUtils;
+
+    // Выводить ответ нейромодели по мере генерации
+    @Value("${coze.api.streaming.enabled:false}")
+    private boolean streamingEnabled;
+
+    /**
+     * Обрабатывает текстовое сообщение пользователя.
+     *
+     * @return Mono, завершающийся после доставки ответа (или сообщения об ошибке);
+     *         до этого очередь чата не переходит к следующему обновлению
+     */
+    public Mono<Void> handleMessage(Message message, UpdateContext context) {
         Long chatId = message.getChatId();
-        Long userId = message.getFrom().getId();
         String text = message.getText();
 
-        // Проверка, имеет ли пользователь активную подписку с доступными запросами
-        if (!subscriptionService.canUserMakeRequest(userId)) {
+        // Резервируем запрос из лимита: одновременные сообщения не превысят его
+        Optional<QuotaReservation> reservation = subscriptionService.reserveRequest(context);
+        if (reservation.isEmpty()) {
             sendSubscriptionLimitMessage(chatId);
-            return;
+            return Mono.empty();
         }
 
         // Отправляем "набирает сообщение..." чтобы пользователь знал, что запрос обрабатывается
         sendTypingAction(chatId);
 
-        // Обработка запроса через Coze API
-        cozeService.processQuery(userId, text)
-                .subscribe(
-                        response -> sendResponse(chatId, response),
-                        error -> {
-                            log.error("Ошибка обработки запроса: {}", error.getMessage(), error);
-                            sendErrorMessage(chatId);
-                        }
-                );
+        if (streamingEnabled) {
+            return streamResponse(chatId, context, text, reservation.get());
+        }
+
+        // Обработка запроса через Coze API и доставка ответа без блокировки потоков
+        return Mono.defer(() -> cozeService.processQuery(context, text, reservation.get()))
+                // Резерв возвращается и при ошибке до обращения к Coze API
+                .doOnError(error -> reservation.get().refund())
+                .onErrorResume(error -> {
+                    log.error("Ошибка обработки запроса: {}", error.getMessage(), error);
+                    sendErrorMessage(chatId);
+                    return Mono.empty();
+                })
+                .flatMap(response -> sendResponse(chatId, response))
+                .doOnNext(sent -> log.debug("Ответ доставлен в чат {}", chatId))
+                .onErrorResume(error -> {
+                    log.error("Ошибка отправки ответа: {}", error.getMessage(), error);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Void> streamResponse(Long chatId, UpdateContext context, String text, QuotaReservation reservation) {
+        Flux<String> fragments = Flux.defer(() -> cozeService.streamQuery(context, text, reservation))
+                .doOnError(error -> reservation.refund());
+
+        return messageUtils.sendStreamingMessage(chatId, fragments, Priority.LOW)
+                .then()
+                .doOnSuccess(unused -> log.debug("Потоковый ответ доставлен в чат {}", chatId))
+                .onErrorResume(error -> {
+                    log.error("Ошибка потоковой обработки запроса: {}", error.getMessage(), error);
+                    sendErrorMessage(chatId);
+                    return Mono.empty();
+                });
     }
 
-    private void sendResponse(Long chatId, CozeResponse response) {
+    private Mono<Message> sendResponse(Long chatId, CozeResponse response) {
         SendMessage message = new SendMessage();
         message.setChatId(chatId);
         message.setText(response.getContent());
         message.enableMarkdown(true);
 
-        try {
-            bot.execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки ответа: {}", e.getMessage(), e);
-        }
+        return outboundMessageScheduler.send(chatId, message, Priority.LOW);
     }
 
     private void sendSubscriptionLimitMessage(Long chatId) {
@@ -72,11 +113,11 @@ public class MessageHandler {
         message.setParseMode("Markdown");
         message.setReplyMarkup(inlineKeyboardFactory.createTariffKeyboard());
 
-        try {
-            bot.execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки сообщения о лимите подписки: {}", e.getMessage(), e);
-        }
+        outboundMessageScheduler.execute(chatId, message, Priority.NORMAL)
+                .exceptionally(e -> {
+                    log.error("Ошибка отправки сообщения о лимите подписки: {}", e.getMessage(), e);
+                    return null;
+                });
     }
 
     private void sendErrorMessage(Long chatId) {
@@ -86,21 +127,22 @@ public class MessageHandler {
         message.setChatId(chatId);
         message.setText(text);
 
-        try {
-            bot.execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки сообщения об ошибке: {}", e.getMessage(), e);
-        }
+        outboundMessageScheduler.execute(chatId, message, Priority.NORMAL)
+                .exceptionally(e -> {
+                    log.error("Ошибка отправки сообщения об ошибке: {}", e.getMessage(), e);
+                    return null;
+                });
     }
 
     private void sendTypingAction(Long chatId) {
-        try {
-            SendChatAction action = new SendChatAction();
-            action.setChatId(chatId);
-            action.setAction(ActionType.TYPING);
-            bot.execute(action);
-        } catch (TelegramApiException e) {
-            log.warn("Ошибка отправки статуса набора текста: {}", e.getMessage());
-        }
+        SendChatAction action = new SendChatAction();
+        action.setChatId(chatId);
+        action.setAction(ActionType.TYPING);
+
+        outboundMessageScheduler.execute(chatId, action, Priority.NORMAL)
+                .exceptionally(e -> {
+                    log.warn("Ошибка отправки статуса набора текста: {}", e.getMessage());
+                    return null;
+                });
     }
 }
\ No newline at end of file
@@ -0,0 +1,421 @@
+package com.chatassist.cozetalk.bot.sender;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import com.chatassist.cozetalk.client.TelegramBotApiClient;
+import com.chatassist.cozetalk.exception.BotException;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Единая точка отправки исходящих вызовов Telegram Bot API.
+ * Соблюдает глобальный лимит Telegram (около 30 сообщений в секунду) и лимит на чат
+ * (около 1 сообщения в секунду), отправляет более приоритетные сообщения первыми,
+ * сохраняет порядок сообщений одного приоритета внутри чата и повторяет вызовы,
+ * получившие ответ 429, с учетом retry_after.
+ * При включенном bot.sender.reactive-transport методы Bot API отправляются через
+ * неблокирующий {@link TelegramBotApiClient}, и рабочий поток не ждет ответа Telegram.
+ */
+@Component
+@Slf4j
+public class OutboundMessageScheduler {
+
+    /**
+     * Приоритет исходящего сообщения.
+     */
+    public enum Priority {
+        /** Ответы на callback и на команды */
+        HIGH,
+        /** Служебные сообщения: статус набора, ошибки, ссылки на оплату */
+        NORMAL,
+        /** Длинные ответы нейромодели */
+        LOW
+    }
+
+    /**
+     * Вызов Telegram Bot API, выполняемый от имени бота.
+     */
+    @FunctionalInterface
+    public interface TelegramCall<T> {
+        T execute(AbsSender sender) throws TelegramApiException;
+    }
+
+    private static final long BUCKET_IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final ObjectProvider<TelegramLongPollingBot> botProvider;
+    private final TelegramBotApiClient telegramBotApiClient;
+    private final ConcurrentHashMap<Long, ChatOutbox> outboxes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, ChatBucket> chatBuckets = new ConcurrentHashMap<>();
+    private final PriorityBlockingQueue<OutboundTask<?>> readyQueue = new PriorityBlockingQueue<>();
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ScheduledExecutorService delayExecutor;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    private final Bucket globalBucket;
+    private final int perChatRate;
+    private final int workerCount;
+    private final int maxQueued;
+    private final int maxRetries;
+    private final boolean reactiveTransport;
+
+    private final Timer queueLatencyTimer;
+    private final Counter droppedCounter;
+    private final Counter retryCounter;
+
+    public OutboundMessageScheduler(ObjectProvider<TelegramLongPollingBot> botProvider,
+                                    TelegramBotApiClient telegramBotApiClient,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${bot.sender.global-rate:30}") int globalRate,
+                                    @Value("${bot.sender.per-chat-rate:1}") int perChatRate,
+                                    @Value("${bot.sender.workers:8}") int workerCount,
+                                    @Value("${bot.sender.max-queued:10000}") int maxQueued,
+                                    @Value("${bot.sender.max-retries:3}") int maxRetries,
+                                    @Value("${bot.sender.reactive-transport:true}") boolean reactiveTransport) {
+        this.botProvider = botProvider;
+        this.telegramBotApiClient = telegramBotApiClient;
+        this.globalBucket = Bucket.builder()
+                .addLimit(Bandwidth.simple(globalRate, Duration.ofSeconds(1)))
+                .build();
+        this.perChatRate = perChatRate;
+        this.workerCount = workerCount;
+        this.maxQueued = maxQueued;
+        this.maxRetries = maxRetries;
+        this.reactiveTransport = reactiveTransport;
+        this.delayExecutor = Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("outbound-delay-"));
+
+        this.queueLatencyTimer = Timer.builder("bot.sender.queue.latency")
+                .description("Время ожидания исходящего сообщения в очереди")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("bot.sender.dropped")
+                .description("Исходящие сообщения, отброшенные без отправки")
+                .register(meterRegistry);
+        this.retryCounter = Counter.builder("bot.sender.retries")
+                .description("Повторные отправки после ответа 429")
+                .register(meterRegistry);
+        Gauge.builder("bot.sender.queued", queuedCount, AtomicInteger::get)
+                .description("Количество исходящих сообщений в очереди")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("outbound-sender-");
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = threadFactory.newThread(this::workLoop);
+            workers.add(worker);
+            worker.start();
+        }
+        delayExecutor.scheduleWithFixedDelay(this::evictIdleBuckets, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Ставит метод Bot API в очередь отправки.
+     *
+     * @param chatId ID чата, к лимиту которого относится вызов
+     * @param method Метод Bot API
+     * @param priority Приоритет отправки
+     * @return Future с результатом вызова
+     */
+    public <T extends Serializable> CompletableFuture<T> execute(Long chatId, BotApiMethod<T> method, Priority priority) {
+        return enqueue(new OutboundTask<>(chatId, priority, sequence.incrementAndGet(),
+                sender -> sender.execute(method), method));
+    }
+
+    /**
+     * Реактивный вариант {@link #execute(Long, BotApiMethod, Priority)}.
+     * Постановка в очередь происходит при подписке.
+     *
+     * @param chatId ID чата, к лимиту которого относится вызов
+     * @param method Метод Bot API
+     * @param priority Приоритет отправки
+     * @return Mono с результатом вызова
+     */
+    public <T extends Serializable> Mono<T> send(Long chatId, BotApiMethod<T> method, Priority priority) {
+        return Mono.fromFuture(() -> execute(chatId, method, priority));
+    }
+
+    /**
+     * Ставит произвольный вызов Bot API (например, отправку файла) в очередь отправки.
+     *
+     * @param chatId ID чата, к лимиту которого относится вызов
+     * @param priority Приоритет отправки
+     * @param call Вызов Bot API
+     * @return Future с результатом вызова
+     */
+    public <T> CompletableFuture<T> submit(Long chatId, Priority priority, TelegramCall<T> call) {
+        return enqueue(new OutboundTask<>(chatId, priority, sequence.incrementAndGet(), call, null));
+    }
+
+    private <T> CompletableFuture<T> enqueue(OutboundTask<T> task) {
+        Long chatId = task.chatId;
+        if (!running || queuedCount.incrementAndGet() > maxQueued) {
+            if (running) {
+                queuedCount.decrementAndGet();
+            }
+            droppedCounter.increment();
+            log.warn("Очередь исходящих сообщений переполнена, сообщение в чат {} отброшено", chatId);
+            task.future.completeExceptionally(new BotException("Очередь исходящих сообщений переполнена"));
+            return task.future;
+        }
+
+        boolean[] activate = {false};
+        ChatOutbox outbox = outboxes.compute(chatId, (id, current) -> {
+            ChatOutbox result = current != null ? current : new ChatOutbox(id);
+            result.pending.add(task);
+            if (!result.active) {
+                result.active = true;
+                activate[0] = true;
+            }
+            return result;
+        });
+
+        if (activate[0]) {
+            promote(outbox.chatId, 0);
+        }
+        return task.future;
+    }
+
+    /**
+     * Переносит следующее сообщение чата в общую очередь, как только это позволяет лимит чата.
+     * В общей очереди одновременно находится не более одного сообщения каждого чата,
+     * поэтому порядок внутри чата сохраняется.
+     */
+    private void promote(Long chatId, long delayNanos) {
+        if (delayNanos > 0) {
+            delayExecutor.schedule(() -> promote(chatId, 0), delayNanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        boolean[] hasPending = {false};
+        outboxes.computeIfPresent(chatId, (id, current) -> {
+            if (current.pending.isEmpty()) {
+                current.active = false;
+                return null;
+            }
+            hasPending[0] = true;
+            return current;
+        });
+        if (!hasPending[0]) {
+            return;
+        }
+
+        ConsumptionProbe probe = chatBucket(chatId).tryConsumeAndReturnRemaining(1);
+        if (!probe.isConsumed()) {
+            delayExecutor.schedule(() -> promote(chatId, 0), probe.getNanosToWaitForRefill(), TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        OutboundTask<?>[] next = {null};
+        outboxes.computeIfPresent(chatId, (id, current) -> {
+            next[0] = current.pending.poll();
+            return current;
+        });
+
+        if (next[0] != null) {
+            readyQueue.add(next[0]);
+        }
+    }
+
+    private void workLoop() {
+        while (running || !readyQueue.isEmpty()) {
+            OutboundTask<?> task;
+            try {
+                task = readyQueue.poll(1, TimeUnit.SECONDS);
+                if (task == null) {
+                    continue;
+                }
+                awaitGlobalToken();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            queueLatencyTimer.record(System.nanoTime() - task.enqueuedAt, TimeUnit.NANOSECONDS);
+            run(task);
+        }
+    }
+
+    private <T> void run(OutboundTask<T> task) {
+        if (reactiveTransport && task.method != null) {
+            telegramBotApiClient.execute(task.method)
+                    .subscribe(
+                            result -> complete(task, result, null),
+                            error -> complete(task, null, error),
+                            () -> {
+                                if (!task.future.isDone()) {
+                                    complete(task, null, null);
+                                }
+                            });
+            return;
+        }
+
+        try {
+            complete(task, task.call.execute(botProvider.getObject()), null);
+        } catch (Exception e) {
+            complete(task, null, e);
+        }
+    }
+
+    /**
+     * Завершает вызов: отдает результат, либо при ответе 429 возвращает сообщение
+     * в начало очереди чата и планирует повтор после retry_after.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void complete(OutboundTask<T> task, Object result, Throwable error) {
+        long retryDelayNanos = -1;
+
+        if (error == null) {
+            task.future.complete((T) result);
+        } else if (error instanceof TelegramApiRequestException requestException
+                && requestException.getParameters() != null
+                && requestException.getParameters().getRetryAfter() != null) {
+            Integer retryAfter = requestException.getParameters().getRetryAfter();
+            if (task.attempts < maxRetries) {
+                task.attempts++;
+                retryCounter.increment();
+                log.warn("Telegram ограничил отправку в чат {}, повтор через {} с", task.chatId, retryAfter);
+                retryDelayNanos = TimeUnit.SECONDS.toNanos(retryAfter);
+            } else {
+                droppedCounter.increment();
+                task.future.completeExceptionally(error);
+            }
+        } else {
+            task.future.completeExceptionally(error);
+        }
+
+        if (retryDelayNanos >= 0) {
+            outboxes.compute(task.chatId, (id, current) -> {
+                ChatOutbox outbox = current != null ? current : new ChatOutbox(id);
+                outbox.pending.add(task);
+                outbox.active = true;
+                return outbox;
+            });
+        } else {
+            queuedCount.decrementAndGet();
+        }
+        promote(task.chatId, Math.max(retryDelayNanos, 0));
+    }
+
+    private void awaitGlobalToken() throws InterruptedException {
+        while (true) {
+            ConsumptionProbe probe = globalBucket.tryConsumeAndReturnRemaining(1);
+            if (probe.isConsumed()) {
+                return;
+            }
+            TimeUnit.NANOSECONDS.sleep(probe.getNanosToWaitForRefill());
+        }
+    }
+
+    private Bucket chatBucket(Long chatId) {
+        ChatBucket chatBucket = chatBuckets.computeIfAbsent(chatId, id -> new ChatBucket(Bucket.builder()
+                .addLimit(Bandwidth.simple(perChatRate, Duration.ofSeconds(1)))
+                .build()));
+        chatBucket.lastUsed = System.nanoTime();
+        return chatBucket.bucket;
+    }
+
+    private void evictIdleBuckets() {
+        long threshold = System.nanoTime() - BUCKET_IDLE_TIMEOUT_NANOS;
+        chatBuckets.entrySet().removeIf(entry -> entry.getValue().lastUsed < threshold
+                && !outboxes.containsKey(entry.getKey()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        delayExecutor.shutdownNow();
+        if (queuedCount.get() > 0) {
+            log.warn("Остановка с неотправленными сообщениями: {}", queuedCount.get());
+        }
+    }
+
+    private static final class ChatOutbox {
+        private final Long chatId;
+        private final PriorityQueue<OutboundTask<?>> pending = new PriorityQueue<>();
+        private boolean active;
+
+        private ChatOutbox(Long chatId) {
+            this.chatId = chatId;
+        }
+    }
+
+    private static final class ChatBucket {
+        private final Bucket bucket;
+        private volatile long lastUsed;
+
+        private ChatBucket(Bucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    private static final class OutboundTask<T> implements Comparable<OutboundTask<?>> {
+        private final Long chatId;
+        private final Priority priority;
+        private final long sequence;
+        private final TelegramCall<T> call;
+        private final BotApiMethod<? extends Serializable> method;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long enqueuedAt = System.nanoTime();
+        private int attempts;
+
+        private OutboundTask(Long chatId, Priority priority, long sequence,
+                             TelegramCall<T> call, BotApiMethod<? extends Serializable> method) {
+            this.chatId = chatId;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.call = call;
+            this.method = method;
+        }
+
+        @Override
+        public int compareTo(OutboundTask<?> other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
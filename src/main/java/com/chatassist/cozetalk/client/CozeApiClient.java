@@ -1,46 +1,213 @@
 package com.chatassist.cozetalk.client;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import com.chatassist.cozetalk.domain.dto.CozeRequest;
 import com.chatassist.cozetalk.domain.dto.CozeResponse;
+import com.chatassist.cozetalk.exception.CozeApiException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
 @Slf4j
 public class CozeApiClient {
 
+    // Маркер завершения потока SSE
+    private static final String STREAM_DONE = "[DONE]";
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+            new ParameterizedTypeReference<>() {};
+
     private final WebClient webClient;
+    private final ObjectMapper objectMapper;
     private final String apiKey;
+    private final CozeConcurrencyLimiter concurrencyLimiter;
+    private final CozeCircuitBreaker circuitBreaker;
+    private final Retry retrySpec;
 
-    public CozeApiClient(WebClient webClient,
+    public CozeApiClient(@Qualifier("cozeWebClient") WebClient webClient,
+                         ObjectMapper objectMapper,
+                         CozeConcurrencyLimiter concurrencyLimiter,
+                         CozeCircuitBreaker circuitBreaker,
                          @Value("${coze.api.base-url}") String baseUrl,
-                         @Value("${coze.api.key}") String apiKey) {
+                         @Value("${coze.api.key}") String apiKey,
+                         @Value("${coze.retry.max-attempts:3}") int maxRetryAttempts,
+                         @Value("${coze.retry.initial-backoff-ms:500}") long initialBackoffMs,
+                         @Value("${coze.retry.max-backoff-ms:5000}") long maxBackoffMs) {
         this.webClient = webClient.mutate()
                 .baseUrl(baseUrl)
                 .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .build();
+        this.objectMapper = objectMapper;
         this.apiKey = apiKey;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.circuitBreaker = circuitBreaker;
+        // Экспоненциальная задержка со случайным разбросом, чтобы повторы разных запросов не совпадали
+        this.retrySpec = Retry.backoff(maxRetryAttempts, Duration.ofMillis(initialBackoffMs))
+                .maxBackoff(Duration.ofMillis(maxBackoffMs))
+                .jitter(0.5)
+                .filter(CozeApiClient::isRetryable)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
     }
 
+    /**
+     * Отправляет запрос и получает ответ целиком.
+     * Каждая попытка проходит через выключатель и адаптивный лимит параллельности;
+     * повторяются только ошибки перегрузки и сетевые ошибки.
+     *
+     * @param request Запрос к нейромодели
+     * @return Mono с ответом нейромодели
+     */
     public Mono<CozeResponse> sendMessage(CozeRequest request) {
-        return webClient.post()
-                .uri("/api/chat/completions")
-                .bodyValue(request)
-                .retrieve()
-                .bodyToMono(CozeResponse.class)
-                .retryWhen(Retry.fixedDelay(3, Duration.ofSeconds(2))
-                        .filter(throwable -> !throwable.getMessage().contains("400")))
+        return Mono.defer(() -> {
+                    CozeConcurrencyLimiter.Permit permit = acquire();
+                    // Исход попытки учитывается один раз: отмена после успеха не освобождает пробу
+                    AtomicBoolean settled = new AtomicBoolean();
+                    return webClient.post()
+                            .uri("/api/chat/completions")
+                            .bodyValue(request)
+                            .retrieve()
+                            .bodyToMono(CozeResponse.class)
+                            .doOnSuccess(response -> {
+                                if (settled.compareAndSet(false, true)) {
+                                    onSuccess(permit);
+                                }
+                            })
+                            .doOnError(error -> {
+                                if (settled.compareAndSet(false, true)) {
+                                    onError(permit, error);
+                                }
+                            })
+                            .doOnCancel(() -> {
+                                if (settled.compareAndSet(false, true)) {
+                                    onCancel(permit);
+                                }
+                            });
+                })
+                .retryWhen(retrySpec)
                 .doOnError(e -> log.error("Ошибка при вызове Coze API: {}", e.getMessage(), e));
     }
-}
\ No newline at end of file
+
+    /**
+     * Запрашивает ответ в потоковом режиме (SSE).
+     * Каждый элемент результата - очередной фрагмент текста ответа, поэтому первые слова
+     * доступны до окончания генерации. Повтор не выполняется: часть ответа уже могла быть
+     * показана пользователю.
+     *
+     * @param request Запрос к нейромодели
+     * @return Поток фрагментов текста ответа
+     */
+    public Flux<String> streamMessage(CozeRequest request) {
+        request.setStream(true);
+
+        return Flux.defer(() -> {
+                    CozeConcurrencyLimiter.Permit permit = acquire();
+                    AtomicBoolean settled = new AtomicBoolean();
+                    return webClient.post()
+                            .uri("/api/chat/completions")
+                            .accept(MediaType.TEXT_EVENT_STREAM)
+                            .bodyValue(request)
+                            .retrieve()
+                            .bodyToFlux(SSE_TYPE)
+                            .map(event -> event.data() != null ? event.data() : "")
+                            .takeWhile(data -> !STREAM_DONE.equals(data.trim()))
+                            .filter(data -> !data.isBlank())
+                            .concatMap(this::parseDelta)
+                            // Длительность потока зависит от длины ответа, поэтому в расчет лимита не идет
+                            .doOnComplete(() -> {
+                                if (settled.compareAndSet(false, true)) {
+                                    circuitBreaker.onSuccess();
+                                    permit.ignore();
+                                }
+                            })
+                            .doOnError(error -> {
+                                if (settled.compareAndSet(false, true)) {
+                                    onError(permit, error);
+                                }
+                            })
+                            .doOnCancel(() -> {
+                                if (settled.compareAndSet(false, true)) {
+                                    onCancel(permit);
+                                }
+                            });
+                })
+                .doOnError(e -> log.error("Ошибка потокового вызова Coze API: {}", e.getMessage(), e));
+    }
+
+    private Mono<String> parseDelta(String data) {
+        try {
+            CozeResponse chunk = objectMapper.readValue(data, CozeResponse.class);
+            return Mono.justOrEmpty(chunk.getContent()).filter(content -> !content.isEmpty());
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+    }
+
+    /**
+     * Получает разрешение выключателя и лимита параллельности на одну попытку вызова.
+     *
+     * @throws CozeApiException если вызов сейчас не допускается
+     */
+    private CozeConcurrencyLimiter.Permit acquire() {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new CozeApiException("Coze API временно недоступен", "CIRCUIT_OPEN");
+        }
+        CozeConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire();
+        if (permit == null) {
+            circuitBreaker.onIgnored();
+            throw new CozeApiException("Превышен лимит одновременных запросов к Coze API", "CONCURRENCY_LIMIT");
+        }
+        return permit;
+    }
+
+    private void onSuccess(CozeConcurrencyLimiter.Permit permit) {
+        circuitBreaker.onSuccess();
+        permit.success();
+    }
+
+    private void onError(CozeConcurrencyLimiter.Permit permit, Throwable error) {
+        if (isRetryable(error)) {
+            circuitBreaker.onError();
+            permit.dropped();
+        } else {
+            // Ошибки запроса (4xx) не говорят о состоянии Coze
+            circuitBreaker.onIgnored();
+            permit.ignore();
+        }
+    }
+
+    private void onCancel(CozeConcurrencyLimiter.Permit permit) {
+        circuitBreaker.onIgnored();
+        permit.ignore();
+    }
+
+    /**
+     * Повторяются ошибки перегрузки Coze (5xx, 429), сетевые ошибки и таймауты.
+     */
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().is5xxServerError()
+                    || responseException.getStatusCode().value() == 429;
+        }
+        return error instanceof WebClientRequestException || error instanceof TimeoutException;
+    }
+}
@@ -0,0 +1,258 @@
+package com.chatassist.cozetalk.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.chatassist.cozetalk.domain.enums.TariffPlan;
+import com.chatassist.cozetalk.exception.CozeApiException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+/**
+ * Очередь вызовов Coze API со взвешенным справедливым обслуживанием по тарифам.
+ * Вызовы ставятся в очередь своего тарифа и запускаются, пока число выполняющихся
+ * вызовов меньше текущего лимита {@link CozeConcurrencyLimiter}. Тариф выбирается
+ * по алгоритму Start-time Fair Queuing: тариф с весом W получает в W раз больше
+ * запусков, чем тариф с весом 1, но ни один тариф не простаивает полностью.
+ * Внутри тарифа пользователи обслуживаются по кругу, поэтому один активный
+ * пользователь не занимает всю долю своего тарифа.
+ */
+@Component
+@Slf4j
+public class CozeCallScheduler {
+
+    private final CozeConcurrencyLimiter concurrencyLimiter;
+    private final Map<TariffPlan, TariffQueue> queues = new EnumMap<>(TariffPlan.class);
+    private final int maxQueued;
+
+    private double virtualTime;
+    private int queued;
+    private int running;
+
+    public CozeCallScheduler(CozeConcurrencyLimiter concurrencyLimiter,
+                             MeterRegistry meterRegistry,
+                             @Value("${coze.scheduler.weight.romantic:1}") int romanticWeight,
+                             @Value("${coze.scheduler.weight.alpha:3}") int alphaWeight,
+                             @Value("${coze.scheduler.weight.lovelace:8}") int lovelaceWeight,
+                             @Value("${coze.scheduler.max-queued:1000}") int maxQueued) {
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.maxQueued = maxQueued;
+
+        queues.put(TariffPlan.ROMANTIC, new TariffQueue(TariffPlan.ROMANTIC, romanticWeight, meterRegistry));
+        queues.put(TariffPlan.ALPHA, new TariffQueue(TariffPlan.ALPHA, alphaWeight, meterRegistry));
+        queues.put(TariffPlan.LOVELACE, new TariffQueue(TariffPlan.LOVELACE, lovelaceWeight, meterRegistry));
+    }
+
+    /**
+     * Ставит вызов в очередь тарифа пользователя.
+     *
+     * @param tariffPlan Тариф пользователя (null - обслуживается как младший тариф)
+     * @param userId ID пользователя
+     * @param call Вызов Coze API, выполняется при выходе из очереди
+     * @return Mono с результатом вызова
+     */
+    public <T> Mono<T> schedule(TariffPlan tariffPlan, Long userId, Supplier<Mono<T>> call) {
+        // singleOrEmpty дожидается завершения источника; next() отменил бы его сразу после
+        // первого элемента, и отмена после успешного ответа освобождала бы пробу выключателя
+        return scheduleMany(tariffPlan, userId, () -> Flux.from(call.get())).singleOrEmpty();
+    }
+
+    /**
+     * Ставит потоковый вызов в очередь тарифа пользователя.
+     * Место в лимите занимается до завершения потока.
+     *
+     * @param tariffPlan Тариф пользователя (null - обслуживается как младший тариф)
+     * @param userId ID пользователя
+     * @param call Вызов Coze API, выполняется при выходе из очереди
+     * @return Поток результатов вызова
+     */
+    public <T> Flux<T> scheduleMany(TariffPlan tariffPlan, Long userId, Supplier<Flux<T>> call) {
+        TariffQueue queue = queues.get(tariffPlan != null ? tariffPlan : TariffPlan.ROMANTIC);
+
+        return Flux.create(sink -> {
+            PendingCall<T> pending = new PendingCall<>(queue, userId, call, sink);
+            sink.onDispose(pending::cancel);
+
+            synchronized (this) {
+                if (queued >= maxQueued) {
+                    sink.error(new CozeApiException("Очередь запросов к Coze API переполнена", "QUEUE_FULL"));
+                    return;
+                }
+                queue.add(pending, virtualTime);
+                queued++;
+            }
+            dispatch();
+        });
+    }
+
+    /**
+     * Запускает вызовы из очередей, пока есть свободные места в лимите параллельности.
+     */
+    private void dispatch() {
+        List<PendingCall<?>> toStart = new ArrayList<>();
+
+        synchronized (this) {
+            while (queued > 0 && running < concurrencyLimiter.getLimit()) {
+                TariffQueue selected = null;
+                for (TariffQueue queue : queues.values()) {
+                    if (!queue.isEmpty() && (selected == null || queue.nextStart(virtualTime) < selected.nextStart(virtualTime)
+                            || (queue.nextStart(virtualTime) == selected.nextStart(virtualTime) && queue.weight > selected.weight))) {
+                        selected = queue;
+                    }
+                }
+                if (selected == null) {
+                    break;
+                }
+
+                virtualTime = selected.nextStart(virtualTime);
+                PendingCall<?> next = selected.poll(virtualTime);
+                queued--;
+                if (next.cancelled) {
+                    continue;
+                }
+                running++;
+                toStart.add(next);
+            }
+        }
+
+        // Подписка выполняется вне блокировки
+        for (PendingCall<?> call : toStart) {
+            call.start();
+        }
+    }
+
+    private void onFinished() {
+        synchronized (this) {
+            running--;
+        }
+        dispatch();
+    }
+
+    /**
+     * Очередь одного тарифа: по очереди на пользователя, обслуживаемых по кругу.
+     */
+    private static final class TariffQueue {
+        private final int weight;
+        private final LinkedHashMap<Long, ArrayDeque<PendingCall<?>>> byUser = new LinkedHashMap<>();
+        private double finishTag;
+        private int size;
+
+        private final Timer waitTimer;
+        private final Timer serviceTimer;
+
+        private TariffQueue(TariffPlan tariffPlan, int weight, MeterRegistry meterRegistry) {
+            this.weight = Math.max(1, weight);
+
+            this.waitTimer = Timer.builder("coze.scheduler.wait")
+                    .description("Время ожидания вызова Coze API в очереди тарифа")
+                    .tag("tariff", tariffPlan.name())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.serviceTimer = Timer.builder("coze.scheduler.service")
+                    .description("Время выполнения вызова Coze API после выхода из очереди")
+                    .tag("tariff", tariffPlan.name())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            Gauge.builder("coze.scheduler.queued", this, queue -> queue.size)
+                    .description("Количество вызовов Coze API в очереди тарифа")
+                    .tag("tariff", tariffPlan.name())
+                    .register(meterRegistry);
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private double nextStart(double virtualTime) {
+            return Math.max(virtualTime, finishTag);
+        }
+
+        private void add(PendingCall<?> call, double virtualTime) {
+            if (size == 0) {
+                // Простаивавший тариф не накапливает "кредит" за время простоя
+                finishTag = Math.max(finishTag, virtualTime);
+            }
+            byUser.computeIfAbsent(call.userId, id -> new ArrayDeque<>()).add(call);
+            size++;
+        }
+
+        private PendingCall<?> poll(double startTag) {
+            finishTag = startTag + 1.0 / weight;
+
+            // Берем вызов первого в круге пользователя и переносим пользователя в конец круга
+            Map.Entry<Long, ArrayDeque<PendingCall<?>>> first = byUser.entrySet().iterator().next();
+            ArrayDeque<PendingCall<?>> userCalls = byUser.remove(first.getKey());
+            PendingCall<?> call = userCalls.poll();
+            if (!userCalls.isEmpty()) {
+                byUser.put(first.getKey(), userCalls);
+            }
+            size--;
+            return call;
+        }
+    }
+
+    private final class PendingCall<T> {
+        private final TariffQueue queue;
+        private final Long userId;
+        private final Supplier<Flux<T>> call;
+        private final FluxSink<T> sink;
+        private final long enqueuedAt = System.nanoTime();
+        private volatile boolean cancelled;
+        private volatile Disposable subscription;
+
+        private PendingCall(TariffQueue queue, Long userId, Supplier<Flux<T>> call, FluxSink<T> sink) {
+            this.queue = queue;
+            this.userId = userId;
+            this.call = call;
+            this.sink = sink;
+        }
+
+        private void start() {
+            long startedAt = System.nanoTime();
+            queue.waitTimer.record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+
+            Flux<T> source;
+            try {
+                source = call.get();
+            } catch (Exception e) {
+                onFinished();
+                sink.error(e);
+                return;
+            }
+
+            subscription = source
+                    .doFinally(signal -> {
+                        queue.serviceTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                        onFinished();
+                    })
+                    .subscribe(sink::next, sink::error, sink::complete);
+            if (cancelled) {
+                subscription.dispose();
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            Disposable current = subscription;
+            if (current != null) {
+                current.dispose();
+            }
+        }
+    }
+}
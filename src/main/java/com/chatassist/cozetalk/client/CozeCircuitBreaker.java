@@ -0,0 +1,172 @@
+package com.chatassist.cozetalk.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Автоматический выключатель вызовов Coze API.
+ * Считает долю ошибок по последним N вызовам; при превышении порога размыкается
+ * и отклоняет вызовы без обращения к Coze. По истечении времени ожидания пропускает
+ * несколько пробных вызовов (полуоткрытое состояние) и замыкается, если все они успешны.
+ */
+@Component
+@Slf4j
+public class CozeCircuitBreaker {
+
+    /**
+     * Состояние выключателя.
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureRateThreshold;
+    private final int minCalls;
+    private final long openDurationNanos;
+    private final int halfOpenProbes;
+
+    // Результаты последних вызовов: true - ошибка
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowFilled;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    private final Counter rejectedCounter;
+    private final Counter openedCounter;
+
+    public CozeCircuitBreaker(MeterRegistry meterRegistry,
+                              @Value("${coze.breaker.failure-rate-threshold:50}") int failureRateThreshold,
+                              @Value("${coze.breaker.window-size:20}") int windowSize,
+                              @Value("${coze.breaker.min-calls:10}") int minCalls,
+                              @Value("${coze.breaker.open-duration-seconds:30}") long openDurationSeconds,
+                              @Value("${coze.breaker.half-open-probes:3}") int halfOpenProbes) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.window = new boolean[windowSize];
+        this.minCalls = Math.min(minCalls, windowSize);
+        this.openDurationNanos = TimeUnit.SECONDS.toNanos(openDurationSeconds);
+        this.halfOpenProbes = halfOpenProbes;
+
+        this.rejectedCounter = Counter.builder("coze.breaker.rejected")
+                .description("Вызовы Coze API, отклоненные разомкнутым выключателем")
+                .register(meterRegistry);
+        this.openedCounter = Counter.builder("coze.breaker.opened")
+                .description("Количество размыканий выключателя Coze API")
+                .register(meterRegistry);
+        Gauge.builder("coze.breaker.state", this, breaker -> breaker.getState().ordinal())
+                .description("Состояние выключателя Coze API: 0 - замкнут, 1 - разомкнут, 2 - полуоткрыт")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Проверяет, можно ли выполнить вызов.
+     *
+     * @return true, если вызов разрешен
+     */
+    public boolean tryAcquirePermission() {
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+                transitionTo(State.HALF_OPEN);
+            }
+
+            if (state == State.CLOSED) {
+                return true;
+            }
+            if (state == State.HALF_OPEN && probesStarted < halfOpenProbes) {
+                probesStarted++;
+                return true;
+            }
+        }
+        rejectedCounter.increment();
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenProbes) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onError() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+            return;
+        }
+        record(true);
+
+        if (state == State.CLOSED && windowFilled >= minCalls
+                && windowFailures * 100 >= failureRateThreshold * windowFilled) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    /**
+     * Вызов отменен или завершился ошибкой, не связанной с состоянием Coze.
+     * В полуоткрытом состоянии освобождает место пробного вызова.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && probesStarted > probesSucceeded) {
+            probesStarted--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (windowFilled == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowFilled++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void transitionTo(State newState) {
+        if (state == newState) {
+            return;
+        }
+        log.warn("Выключатель Coze API: {} -> {}", state, newState);
+        state = newState;
+
+        switch (newState) {
+            case OPEN -> {
+                openedAt = System.nanoTime();
+                openedCounter.increment();
+            }
+            case HALF_OPEN -> {
+                probesStarted = 0;
+                probesSucceeded = 0;
+            }
+            case CLOSED -> {
+                windowIndex = 0;
+                windowFilled = 0;
+                windowFailures = 0;
+            }
+        }
+    }
+}
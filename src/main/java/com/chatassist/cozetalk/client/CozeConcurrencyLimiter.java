@@ -0,0 +1,137 @@
+package com.chatassist.cozetalk.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Адаптивное ограничение количества одновременных вызовов Coze API (AIMD).
+ * Каждый успешный быстрый ответ увеличивает лимит на 1/limit, а ошибка перегрузки
+ * (5xx, 429, таймаут) или ответ медленнее порога уменьшает лимит в backoff-ratio раз.
+ * Так при деградации Coze нагрузка на него снижается, а не растет.
+ */
+@Component
+@Slf4j
+public class CozeConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long maxLatencyNanos;
+
+    private double limit;
+    private int inFlight;
+
+    private final Counter rejectedCounter;
+
+    public CozeConcurrencyLimiter(MeterRegistry meterRegistry,
+                                  @Value("${coze.limiter.initial-limit:20}") int initialLimit,
+                                  @Value("${coze.limiter.min-limit:2}") int minLimit,
+                                  @Value("${coze.limiter.max-limit:200}") int maxLimit,
+                                  @Value("${coze.limiter.backoff-ratio:0.9}") double backoffRatio,
+                                  @Value("${coze.limiter.max-latency-ms:20000}") long maxLatencyMs) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMs);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+
+        this.rejectedCounter = Counter.builder("coze.limiter.rejected")
+                .description("Вызовы Coze API, отклоненные из-за превышения лимита параллельности")
+                .register(meterRegistry);
+        Gauge.builder("coze.limiter.limit", this, CozeConcurrencyLimiter::getLimit)
+                .description("Текущий лимит одновременных вызовов Coze API")
+                .register(meterRegistry);
+        Gauge.builder("coze.limiter.inflight", this, CozeConcurrencyLimiter::getInFlight)
+                .description("Количество выполняющихся вызовов Coze API")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Пытается занять место для вызова.
+     *
+     * @return Разрешение на вызов или null, если лимит исчерпан
+     */
+    public Permit tryAcquire() {
+        synchronized (this) {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return new Permit(System.nanoTime());
+            }
+        }
+        rejectedCounter.increment();
+        return null;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private synchronized void release(long rttNanos, Outcome outcome) {
+        inFlight--;
+
+        if (outcome == Outcome.SUCCESS && rttNanos <= maxLatencyNanos) {
+            // Увеличиваем лимит, только если он действительно используется
+            if (inFlight + 1 >= (int) limit) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        } else if (outcome != Outcome.IGNORED) {
+            double previous = limit;
+            limit = Math.max(minLimit, limit * backoffRatio);
+            if ((int) previous != (int) limit) {
+                log.debug("Лимит параллельности Coze API снижен до {}", (int) limit);
+            }
+        }
+    }
+
+    private enum Outcome {
+        SUCCESS,
+        DROPPED,
+        IGNORED
+    }
+
+    /**
+     * Разрешение на один вызов. Должно быть освобождено ровно одним из методов
+     * {@link #success()}, {@link #dropped()} или {@link #ignore()}; повторные вызовы игнорируются.
+     */
+    public final class Permit {
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        /** Вызов завершился успешно, время ответа учитывается при расчете лимита */
+        public void success() {
+            complete(Outcome.SUCCESS);
+        }
+
+        /** Вызов завершился ошибкой перегрузки */
+        public void dropped() {
+            complete(Outcome.DROPPED);
+        }
+
+        /** Вызов отменен или завершился ошибкой, не связанной с нагрузкой */
+        public void ignore() {
+            complete(Outcome.IGNORED);
+        }
+
+        private void complete(Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                release(System.nanoTime() - startNanos, outcome);
+            }
+        }
+    }
+}
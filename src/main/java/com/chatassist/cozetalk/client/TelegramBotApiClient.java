@@ -0,0 +1,77 @@
+package com.chatassist.cozetalk.client;
+
+import java.io.Serializable;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Неблокирующий клиент Telegram Bot API поверх общего WebClient.
+ * Выполняет методы Bot API (SendMessage, EditMessageText, SendChatAction,
+ * AnswerCallbackQuery и т.д.) без удержания потока на время HTTP-запроса.
+ */
+@Component
+@Slf4j
+public class TelegramBotApiClient {
+
+    private final WebClient webClient;
+
+    // Сериализация совпадает с DefaultAbsSender из telegrambots
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public TelegramBotApiClient(@Qualifier("telegramWebClient") WebClient webClient,
+                                @Value("${bot.api.base-url:https://api.telegram.org}") String baseUrl,
+                                @Value("${bot.token}") String token) {
+        // Токен входит в базовый адрес, а не в переменную шаблона: значение переменной
+        // кодируется целиком, и двоеточие токена превратилось бы в %3A
+        this.webClient = webClient.mutate()
+                .baseUrl(baseUrl + "/bot" + token)
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .build();
+    }
+
+    /**
+     * Выполняет метод Bot API.
+     * Ошибки Telegram (в том числе 429 с retry_after) приходят как {@link TelegramApiRequestException}.
+     *
+     * @param method Метод Bot API
+     * @return Mono с результатом вызова
+     */
+    public <T extends Serializable> Mono<T> execute(BotApiMethod<T> method) {
+        String body;
+        try {
+            method.validate();
+            body = objectMapper.writeValueAsString(method);
+        } catch (JsonProcessingException e) {
+            return Mono.error(new TelegramApiRequestException("Не удалось сериализовать метод " + method.getMethod(), e));
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
+
+        return webClient.post()
+                .uri("/{method}", method.getMethod())
+                .bodyValue(body)
+                // Telegram возвращает описание ошибки в теле ответа с кодом 4xx, поэтому тело читается при любом статусе
+                .exchangeToMono(response -> response.bodyToMono(String.class))
+                .flatMap(responseBody -> {
+                    try {
+                        return Mono.justOrEmpty(method.deserializeResponse(responseBody));
+                    } catch (TelegramApiRequestException e) {
+                        return Mono.error(e);
+                    }
+                })
+                .doOnError(e -> log.debug("Ошибка вызова Telegram Bot API {}: {}", method.getMethod(), e.getMessage()));
+    }
+}
@@ -4,6 +4,7 @@ import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Base64;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -25,7 +26,7 @@ public class YooKassaApiClient {
     private final String shopId;
     private final String secretKey;
 
-    public YooKassaApiClient(WebClient webClient,
+    public YooKassaApiClient(@Qualifier("yooKassaWebClient") WebClient webClient,
                              @Value("${yukassa.api.base-url}") String baseUrl,
                              @Value("${yukassa.shop-id}") String shopId,
                              @Value("${yukassa.secret-key}") String secretKey) {
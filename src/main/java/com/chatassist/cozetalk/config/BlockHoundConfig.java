@@ -0,0 +1,31 @@
+package com.chatassist.cozetalk.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import reactor.blockhound.BlockHound;
+
+/**
+ * Обнаружение блокирующих вызовов в потоках Reactor (event loop Netty, parallel).
+ * Блокирующий вызов в таком потоке завершает реактивную цепочку ошибкой BlockingOperationError.
+ * Включается только для разработки и тестов: библиотека подключается только к bootRun
+ * и тестам, поэтому в собранном приложении конфигурация не применяется.
+ * На JDK 13+ требует флага JVM -XX:+AllowRedefinitionToAddDeleteMethods.
+ */
+@Configuration
+@ConditionalOnClass(name = "reactor.blockhound.BlockHound")
+@ConditionalOnProperty(name = "reactor.blockhound.enabled", havingValue = "true")
+@Slf4j
+public class BlockHoundConfig {
+
+    @PostConstruct
+    public void install() {
+        BlockHound.install(builder -> builder
+                // Запись логов в файл и консоль под блокировкой Logback
+                .allowBlockingCallsInside("ch.qos.logback.core.OutputStreamAppender", "writeBytes"));
+        log.info("BlockHound включен: блокирующие вызовы в потоках Reactor приводят к ошибке");
+    }
+}
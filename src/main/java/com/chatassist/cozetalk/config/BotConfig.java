@@ -6,7 +6,6 @@ import org.springframework.context.annotation.Configuration;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
-import com.chatassist.cozetalk.bot.TelegramBot;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -25,18 +24,13 @@ public class BotConfig {
     private String webhookPath;
 
     @Bean
-    public TelegramBotsApi telegramBotsApi(TelegramBot bot) throws TelegramApiException {
-        TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-
-        // Регистрация бота с WebHook или без него в зависимости от настроек
-        if (webhookPath != null && !webhookPath.isEmpty()) {
-            // Настройка для WebHook (будет настроено через контроллер WebhookController)
-            botsApi.registerBot(bot);
-        } else {
-            // Настройка LongPolling
-            botsApi.registerBot(bot);
-        }
+    public TelegramBotsApi telegramBotsApi() throws TelegramApiException {
+        // Бот не регистрируется в DefaultBotSession: обновления получает
+        // PollingUpdateReceiver (long polling) или WebhookController (webhook)
+        return new TelegramBotsApi(DefaultBotSession.class);
+    }
 
-        return botsApi;
+    public boolean isWebhookMode() {
+        return webhookPath != null && !webhookPath.isEmpty();
     }
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.chatassist.cozetalk.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Настройки HTTP-клиентов внешних API.
+ * У каждого внешнего сервиса свой пул соединений, поэтому медленные ответы
+ * Coze не занимают соединения, нужные для платежей и Telegram.
+ */
+@Component
+@ConfigurationProperties(prefix = "http.clients")
+@Data
+public class HttpClientProperties {
+
+    private Pool coze = new Pool(64, Duration.ofSeconds(60));
+    private Pool yookassa = new Pool(16, Duration.ofSeconds(15));
+    private Pool telegram = new Pool(32, Duration.ofSeconds(15));
+
+    /**
+     * Настройки пула соединений одного внешнего API.
+     */
+    @Data
+    public static class Pool {
+        /** Максимальное количество соединений в пуле */
+        private int maxConnections;
+        /** Максимальное количество запросов, ожидающих свободного соединения */
+        private int pendingAcquireMaxCount = 500;
+        /** Максимальное время ожидания свободного соединения */
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(10);
+        /** Время, после которого неиспользуемое соединение закрывается */
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        /** Максимальное время жизни соединения */
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        /** Периодичность фоновой очистки пула */
+        private Duration evictionInterval = Duration.ofSeconds(30);
+        /** Таймаут установки соединения */
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        /** Таймаут ожидания ответа */
+        private Duration responseTimeout;
+        /** Использовать HTTP/2 (с откатом на HTTP/1.1) */
+        private boolean http2;
+
+        public Pool() {
+        }
+
+        public Pool(int maxConnections, Duration responseTimeout) {
+            this.maxConnections = maxConnections;
+            this.responseTimeout = responseTimeout;
+        }
+    }
+}
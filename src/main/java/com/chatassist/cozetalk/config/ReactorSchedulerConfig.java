@@ -0,0 +1,23 @@
+package com.chatassist.cozetalk.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Планировщики Reactor для блокирующей работы.
+ * Потоки Reactor Netty не должны выполнять JDBC: операции с базой данных из реактивных
+ * цепочек переносятся на ограниченный пул, размер которого соответствует пулу соединений.
+ */
+@Configuration
+public class ReactorSchedulerConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jdbcScheduler(@Value("${jdbc.scheduler.thread-cap:10}") int threadCap,
+                                   @Value("${jdbc.scheduler.queued-task-cap:1000}") int queuedTaskCap) {
+        return Schedulers.newBoundedElastic(threadCap, queuedTaskCap, "jdbc");
+    }
+}
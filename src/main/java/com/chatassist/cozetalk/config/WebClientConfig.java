@@ -1,17 +1,79 @@
 package com.chatassist.cozetalk.config;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * HTTP-клиенты внешних API, каждый со своим пулом соединений.
+ * Метрики пулов (reactor.netty.connection.provider.*) публикуются в Actuator.
+ */
 @Configuration
 public class WebClientConfig {
 
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider cozeConnectionProvider(HttpClientProperties properties) {
+        return connectionProvider("coze", properties.getCoze());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider yooKassaConnectionProvider(HttpClientProperties properties) {
+        return connectionProvider("yookassa", properties.getYookassa());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider telegramConnectionProvider(HttpClientProperties properties) {
+        return connectionProvider("telegram", properties.getTelegram());
+    }
+
+    @Bean
+    public WebClient cozeWebClient(@Qualifier("cozeConnectionProvider") ConnectionProvider connectionProvider,
+                                     HttpClientProperties properties) {
+        return webClient(connectionProvider, properties.getCoze());
+    }
+
     @Bean
-    public WebClient webClient() {
+    public WebClient yooKassaWebClient(@Qualifier("yooKassaConnectionProvider") ConnectionProvider connectionProvider,
+                                     HttpClientProperties properties) {
+        return webClient(connectionProvider, properties.getYookassa());
+    }
+
+    @Bean
+    public WebClient telegramWebClient(@Qualifier("telegramConnectionProvider") ConnectionProvider connectionProvider,
+                                     HttpClientProperties properties) {
+        return webClient(connectionProvider, properties.getTelegram());
+    }
+
+    private ConnectionProvider connectionProvider(String name, HttpClientProperties.Pool pool) {
+        return ConnectionProvider.builder(name)
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .evictInBackground(pool.getEvictionInterval())
+                .metrics(true)
+                .build();
+    }
+
+    private WebClient webClient(ConnectionProvider connectionProvider, HttpClientProperties.Pool pool) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) pool.getConnectTimeout().toMillis())
+                .responseTimeout(pool.getResponseTimeout());
+        if (pool.isHttp2()) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+
         // Увеличиваем размер буфера для обработки крупных ответов
         final int size = 16 * 1024 * 1024; // 16MB
         final ExchangeStrategies strategies = ExchangeStrategies.builder()
@@ -19,8 +81,9 @@ public class WebClientConfig {
                 .build();
 
         return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .exchangeStrategies(strategies)
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,29 @@
 package com.chatassist.cozetalk.controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
 import com.chatassist.cozetalk.domain.User;
+import com.chatassist.cozetalk.domain.enums.ExportFormat;
+import com.chatassist.cozetalk.domain.enums.PaymentStatus;
 import com.chatassist.cozetalk.domain.enums.TariffPlan;
+import com.chatassist.cozetalk.service.CozeResponseCache;
+import com.chatassist.cozetalk.service.ExportService;
 import com.chatassist.cozetalk.service.RequestLogService;
+import com.chatassist.cozetalk.service.ResponseTextCompressor;
 import com.chatassist.cozetalk.service.SubscriptionService;
 import com.chatassist.cozetalk.service.UserService;
 import com.chatassist.cozetalk.service.PaymentService;
 
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -24,6 +37,9 @@ public class AdminController {
     private final SubscriptionService subscriptionService;
     private final PaymentService paymentService;
     private final RequestLogService requestLogService;
+    private final CozeResponseCache cozeResponseCache;
+    private final ResponseTextCompressor responseTextCompressor;
+    private final ExportService exportService;
 
     @GetMapping("")
     public String redirectToDashboard() {
@@ -38,6 +54,8 @@ public class AdminController {
         model.addAttribute("totalRequests", requestLogService.countTotalRequests());
         model.addAttribute("requestsLastHour", requestLogService.countRequestsInLastHour());
         model.addAttribute("requestsLastDay", requestLogService.countRequestsInLastDay());
+        model.addAttribute("cachedResponses", cozeResponseCache.size());
+        model.addAttribute("compressionSavedPercent", Math.round(responseTextCompressor.getSavedRatio() * 100));
 
         return "admin/dashboard";
     }
@@ -78,4 +96,53 @@ public class AdminController {
         model.addAttribute("payments", paymentService.getAllPayments());
         return "admin/payments";
     }
+
+    @PostMapping("/cache/coze/purge")
+    public String purgeCozeCache() {
+        long removed = cozeResponseCache.purge();
+        log.info("Администратор очистил кэш ответов нейромодели ({} записей)", removed);
+        return "redirect:/admin/dashboard";
+    }
+
+    @PostMapping("/compression/dictionary/train")
+    public String trainCompressionDictionary() {
+        int dictionaryId = responseTextCompressor.trainDictionary();
+        log.info("Администратор запустил обучение словаря сжатия ответов (текущий словарь {})", dictionaryId);
+        return "redirect:/admin/dashboard";
+    }
+
+    @GetMapping("/export/request-logs")
+    public void exportRequestLogs(@RequestParam(defaultValue = "CSV") ExportFormat format,
+                                  @RequestParam(defaultValue = "false") boolean gzip,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                  @RequestParam(required = false) String status,
+                                  HttpServletResponse response) throws IOException {
+        try (OutputStream out = openExport(response, "request_logs", format, gzip)) {
+            exportService.exportRequestLogs(from, to, status, format, out);
+        }
+    }
+
+    @GetMapping("/export/payments")
+    public void exportPayments(@RequestParam(defaultValue = "CSV") ExportFormat format,
+                               @RequestParam(defaultValue = "false") boolean gzip,
+                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                               @RequestParam(required = false) PaymentStatus status,
+                               HttpServletResponse response) throws IOException {
+        try (OutputStream out = openExport(response, "payments", format, gzip)) {
+            exportService.exportPayments(from, to, status, format, out);
+        }
+    }
+
+    // Сжатая выгрузка отдается файлом .gz, а не через Content-Encoding, чтобы браузер сохранял ее без распаковки
+    private OutputStream openExport(HttpServletResponse response, String name, ExportFormat format, boolean gzip)
+            throws IOException {
+        String fileName = name + "." + format.getExtension() + (gzip ? ".gz" : "");
+        response.setContentType(gzip ? "application/gzip" : format.getContentType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+
+        OutputStream out = response.getOutputStream();
+        return gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+    }
 }
\ No newline at end of file
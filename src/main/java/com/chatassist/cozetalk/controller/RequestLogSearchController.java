@@ -0,0 +1,45 @@
+package com.chatassist.cozetalk.controller;
+
+import java.time.LocalDateTime;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.chatassist.cozetalk.domain.dto.RequestLogSearchPage;
+import com.chatassist.cozetalk.service.RequestLogSearchService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@RestController
+@RequestMapping("/admin/api/request-logs")
+@RequiredArgsConstructor
+@Slf4j
+public class RequestLogSearchController {
+
+    private final RequestLogSearchService requestLogSearchService;
+
+    @GetMapping("/search")
+    public ResponseEntity<RequestLogSearchPage> search(
+            @RequestParam String q,
+            @RequestParam(required = false) Long telegramId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeTime,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "20") int size) {
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(requestLogSearchService.search(
+                    q, telegramId, status, from, to, beforeTime, beforeId, size));
+        } catch (IllegalArgumentException e) {
+            // Слишком длинный или пустой период поиска
+            log.debug("Отклонен поиск по журналу запросов: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package com.chatassist.cozetalk.controller;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
-import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
@@ -28,10 +28,15 @@ public class WebhookController {
     private String webhookPath;
 
     @PostMapping("/webhook")
-    public BotApiMethod<?> onUpdateReceived(@RequestBody Update update) {
+    public ResponseEntity<Void> onUpdateReceived(@RequestBody Update update) {
         log.debug("Получено обновление от Telegram: {}", update);
-        telegramBot.onUpdateReceived(update);
-        return null;
+
+        // Обновление обрабатывается асинхронно, Telegram получает ответ сразу;
+        // при перегрузке диспетчера 429 заставляет Telegram повторить доставку
+        if (!telegramBot.submit(update)) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        return ResponseEntity.ok().build();
     }
 
     @GetMapping("/webhook/info")
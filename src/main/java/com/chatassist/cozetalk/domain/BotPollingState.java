@@ -0,0 +1,23 @@
+package com.chatassist.cozetalk.domain;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "bot_polling_state")
+@Data
+@NoArgsConstructor
+public class BotPollingState {
+
+    @Id
+    private String botUsername;
+
+    @Column(nullable = false)
+    private Long lastUpdateId;  // Последний подтвержденный update_id
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
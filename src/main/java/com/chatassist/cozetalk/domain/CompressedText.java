@@ -0,0 +1,50 @@
+package com.chatassist.cozetalk.domain;
+
+import java.util.function.Function;
+
+/**
+ * Текст, хранящийся в базе данных в сжатом виде.
+ * Загруженное значение распаковывается только при первом обращении к тексту,
+ * поэтому выборки журнала, не использующие ответы, не тратят время на распаковку.
+ */
+public final class CompressedText {
+
+    private final byte[] compressed;
+    private final Function<byte[], String> decoder;
+    private volatile String text;
+
+    private CompressedText(String text, byte[] compressed, Function<byte[], String> decoder) {
+        this.text = text;
+        this.compressed = compressed;
+        this.decoder = decoder;
+    }
+
+    public static CompressedText of(String text) {
+        return text != null ? new CompressedText(text, null, null) : null;
+    }
+
+    static CompressedText compressed(byte[] compressed, Function<byte[], String> decoder) {
+        return new CompressedText(null, compressed, decoder);
+    }
+
+    public String getText() {
+        String value = text;
+        if (value == null) {
+            value = decoder.apply(compressed);
+            text = value;
+        }
+        return value;
+    }
+
+    /**
+     * @return Сжатые данные, если значение загружено из базы данных, иначе null
+     */
+    byte[] getCompressed() {
+        return compressed;
+    }
+
+    @Override
+    public String toString() {
+        return getText();
+    }
+}
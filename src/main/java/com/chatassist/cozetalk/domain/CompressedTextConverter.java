@@ -0,0 +1,38 @@
+package com.chatassist.cozetalk.domain;
+
+import org.hibernate.annotations.Immutable;
+
+import com.chatassist.cozetalk.service.ResponseTextCompressor;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Преобразование {@link CompressedText} в столбец bytea.
+ * Значения неизменяемы: Hibernate сравнивает их по ссылке и не распаковывает при проверке изменений.
+ */
+@Converter
+@Immutable
+public class CompressedTextConverter implements AttributeConverter<CompressedText, byte[]> {
+
+    private final ResponseTextCompressor compressor;
+
+    public CompressedTextConverter(ResponseTextCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(CompressedText attribute) {
+        if (attribute == null) {
+            return null;
+        }
+        // Загруженное значение сохраняется без повторного сжатия
+        byte[] compressed = attribute.getCompressed();
+        return compressed != null ? compressed : compressor.compress(attribute.getText());
+    }
+
+    @Override
+    public CompressedText convertToEntityAttribute(byte[] dbData) {
+        return dbData != null ? CompressedText.compressed(dbData, compressor::decompress) : null;
+    }
+}
@@ -12,8 +12,10 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class RequestLog {
 
+    // ID выделяются диапазонами из последовательности, что позволяет пакетную вставку
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "request_logs_id_seq")
+    @SequenceGenerator(name = "request_logs_id_seq", sequenceName = "request_logs_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -26,14 +28,43 @@ public class RequestLog {
     @Column(columnDefinition = "TEXT", nullable = false)
     private String requestText;
 
-    @Column(columnDefinition = "TEXT")
-    private String responseText;
+    // Хранится сжатым в response_text_z и распаковывается при первом обращении
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "response_text_z")
+    private CompressedText responseText;
+
+    // Ответ без сжатия: записи до миграции V11 и записи при request-log.compression.enabled=false
+    @Column(name = "response_text", columnDefinition = "TEXT")
+    private String plainResponseText;
 
     @Column(nullable = false)
     private String status;
 
     private Integer processTime;  // Время обработки в миллисекундах
 
+    /**
+     * @return Ответ из сжатого столбца, а если он пуст - из столбца без сжатия
+     */
+    public CompressedText getResponseText() {
+        return responseText != null || plainResponseText == null ? responseText : CompressedText.of(plainResponseText);
+    }
+
+    /**
+     * Сохраняет ответ в сжатом виде.
+     */
+    public void setResponseText(CompressedText responseText) {
+        this.responseText = responseText;
+        this.plainResponseText = null;
+    }
+
+    /**
+     * Сохраняет ответ без сжатия.
+     */
+    public void setPlainResponseText(String plainResponseText) {
+        this.plainResponseText = plainResponseText;
+        this.responseText = null;
+    }
+
     @PrePersist
     public void prePersist() {
         if (requestTime == null) {
@@ -1,5 +1,7 @@
 package com.chatassist.cozetalk.domain.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.Data;
 
 @Data
@@ -7,4 +9,8 @@ public class CozeRequest {
     private String prompt;
     private Integer maxTokens;
     private Double temperature;
-}
\ No newline at end of file
+
+    // Потоковая выдача ответа (SSE), передается только для потоковых запросов
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean stream;
+}
@@ -0,0 +1,17 @@
+package com.chatassist.cozetalk.domain.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Найденная запись журнала запросов.
+ *
+ * @param id ID записи
+ * @param telegramId Telegram ID пользователя
+ * @param requestTime Время запроса
+ * @param status Статус обработки
+ * @param processTime Время обработки в миллисекундах
+ * @param snippet Фрагмент текста запроса, найденные слова выделены тегом mark, остальной текст экранирован
+ */
+public record RequestLogSearchHit(Long id, Long telegramId, LocalDateTime requestTime, String status,
+                                  Integer processTime, String snippet) {
+}
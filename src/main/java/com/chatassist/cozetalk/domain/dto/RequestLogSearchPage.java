@@ -0,0 +1,15 @@
+package com.chatassist.cozetalk.domain.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Страница результатов поиска по журналу запросов.
+ * Следующая страница запрашивается с beforeTime и beforeId из этой страницы.
+ *
+ * @param items Найденные записи от новых к старым
+ * @param nextBeforeTime Время последней записи страницы (null, если страница последняя)
+ * @param nextBeforeId ID последней записи страницы (null, если страница последняя)
+ */
+public record RequestLogSearchPage(List<RequestLogSearchHit> items, LocalDateTime nextBeforeTime, Long nextBeforeId) {
+}
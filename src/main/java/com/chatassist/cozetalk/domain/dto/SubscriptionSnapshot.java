@@ -0,0 +1,25 @@
+package com.chatassist.cozetalk.domain.dto;
+
+import java.time.LocalDateTime;
+
+import com.chatassist.cozetalk.domain.enums.TariffPlan;
+
+/**
+ * Неизменяемый снимок подписки пользователя для проверок без обращения к базе данных.
+ * Остаток запросов в снимок не входит: он списывается атомарно в базе данных.
+ *
+ * @param userId ID пользователя в базе данных
+ * @param tariffPlan Тарифный план (null, если подписки нет)
+ * @param endDate Дата окончания подписки
+ * @param dailyLimit Дневной лимит запросов
+ */
+public record SubscriptionSnapshot(Long userId, TariffPlan tariffPlan, LocalDateTime endDate, Integer dailyLimit) {
+
+    public boolean exists() {
+        return tariffPlan != null;
+    }
+
+    public boolean isActive(LocalDateTime now) {
+        return exists() && endDate.isAfter(now);
+    }
+}
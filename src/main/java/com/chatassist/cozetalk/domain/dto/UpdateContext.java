@@ -0,0 +1,62 @@
+package com.chatassist.cozetalk.domain.dto;
+
+import java.time.LocalDateTime;
+
+import com.chatassist.cozetalk.domain.enums.TariffPlan;
+
+import lombok.Getter;
+
+/**
+ * Данные обновления Telegram, которые разрешаются один раз при его обработке:
+ * пользователь, его подписка и использование дневного лимита.
+ * Передается обработчикам и сервисам вместо повторного поиска пользователя в базе данных.
+ */
+@Getter
+public class UpdateContext {
+
+    private final Long chatId;
+    private final Long telegramId;
+    // null, если пользователь не зарегистрирован
+    private final SubscriptionSnapshot subscription;
+    private final int usedToday;
+
+    public UpdateContext(Long chatId, Long telegramId, SubscriptionSnapshot subscription, int usedToday) {
+        this.chatId = chatId;
+        this.telegramId = telegramId;
+        this.subscription = subscription;
+        this.usedToday = usedToday;
+    }
+
+    public boolean isRegistered() {
+        return subscription != null;
+    }
+
+    /**
+     * @return ID пользователя в базе данных или null, если пользователь не зарегистрирован
+     */
+    public Long getUserId() {
+        return isRegistered() ? subscription.userId() : null;
+    }
+
+    /**
+     * @return Тариф пользователя или null, если подписки нет
+     */
+    public TariffPlan getTariffPlan() {
+        return isRegistered() ? subscription.tariffPlan() : null;
+    }
+
+    public boolean hasSubscription() {
+        return isRegistered() && subscription.exists();
+    }
+
+    public boolean hasActiveSubscription() {
+        return isRegistered() && subscription.isActive(LocalDateTime.now());
+    }
+
+    /**
+     * @return Количество запросов, оставшихся на сегодня на момент получения обновления
+     */
+    public int getRemainingToday() {
+        return hasSubscription() ? Math.max(0, subscription.dailyLimit() - usedToday) : 0;
+    }
+}
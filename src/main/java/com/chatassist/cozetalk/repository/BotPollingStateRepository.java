@@ -0,0 +1,23 @@
+package com.chatassist.cozetalk.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.chatassist.cozetalk.domain.BotPollingState;
+
+@Repository
+public interface BotPollingStateRepository extends JpaRepository<BotPollingState, String> {
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO bot_polling_state (bot_username, last_update_id, updated_at) " +
+            "VALUES (:botUsername, :lastUpdateId, NOW()) " +
+            "ON CONFLICT (bot_username) DO UPDATE SET last_update_id = EXCLUDED.last_update_id, updated_at = NOW()",
+            nativeQuery = true)
+    void saveLastUpdateId(@Param("botUsername") String botUsername,
+                          @Param("lastUpdateId") long lastUpdateId);
+}
@@ -19,7 +19,9 @@ public interface RequestLogRepository extends JpaRepository<RequestLog, Long> {
 
     List<RequestLog> findByUserOrderByRequestTimeDesc(User user, Pageable pageable);
 
-    @Query("SELECT COUNT(r) FROM RequestLog r WHERE r.user = :user AND r.requestTime BETWEEN :startOfDay AND :endOfDay")
+    // Ответы из кэша не расходуют дневной лимит; границы по request_time ограничивают запрос текущей секцией
+    @Query("SELECT COUNT(r) FROM RequestLog r WHERE r.user = :user AND r.requestTime BETWEEN :startOfDay AND :endOfDay "
+            + "AND r.status <> 'CACHED'")
     int countRequestsForUserToday(@Param("user") User user,
                                   @Param("startOfDay") LocalDateTime startOfDay,
                                   @Param("endOfDay") LocalDateTime endOfDay);
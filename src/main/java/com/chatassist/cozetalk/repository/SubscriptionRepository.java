@@ -5,21 +5,52 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.chatassist.cozetalk.domain.Subscription;
 import com.chatassist.cozetalk.domain.User;
+import com.chatassist.cozetalk.domain.dto.SubscriptionSnapshot;
 
 @Repository
 public interface SubscriptionRepository extends JpaRepository<Subscription, Long> {
 
     Optional<Subscription> findByUser(User user);
 
+    @Query("SELECT new com.chatassist.cozetalk.domain.dto.SubscriptionSnapshot(u.id, s.tariffPlan, s.endDate, s.dailyLimit) " +
+            "FROM User u LEFT JOIN Subscription s ON s.user = u WHERE u.telegramId = :telegramId")
+    Optional<SubscriptionSnapshot> findSnapshotByTelegramId(@Param("telegramId") Long telegramId);
+
     @Query("SELECT s FROM Subscription s WHERE s.endDate > :now")
     List<Subscription> findAllActive(@Param("now") LocalDateTime now);
 
     @Query("SELECT COUNT(s) FROM Subscription s WHERE s.endDate > :now")
     long countActiveSubscriptions(@Param("now") LocalDateTime now);
-}
\ No newline at end of file
+
+    /**
+     * Атомарно списывает один запрос с активной подписки, если запросы еще остались.
+     *
+     * @return 1, если запрос списан, иначе 0
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE subscriptions SET remaining_requests = remaining_requests - 1 " +
+            "WHERE user_id = (SELECT id FROM users WHERE telegram_id = :telegramId) " +
+            "AND remaining_requests > 0 AND end_date > NOW()",
+            nativeQuery = true)
+    int decrementRemainingRequests(@Param("telegramId") Long telegramId);
+
+    /**
+     * Возвращает ранее списанный запрос.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE subscriptions SET remaining_requests = remaining_requests + 1 " +
+            "WHERE user_id = (SELECT id FROM users WHERE telegram_id = :telegramId) " +
+            "AND remaining_requests < 2147483647",
+            nativeQuery = true)
+    int incrementRemainingRequests(@Param("telegramId") Long telegramId);
+}
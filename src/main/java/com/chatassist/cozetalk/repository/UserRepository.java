@@ -3,7 +3,11 @@ package com.chatassist.cozetalk.repository;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.chatassist.cozetalk.domain.User;
 
@@ -13,4 +17,21 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByTelegramId(Long telegramId);
 
     boolean existsByTelegramId(Long telegramId);
+
+    /**
+     * Создает пользователя, если пользователя с таким Telegram ID еще нет.
+     * Одновременная регистрация одного пользователя не нарушает ограничение уникальности.
+     *
+     * @return 1, если пользователь создан, иначе 0
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO users (telegram_id, username, first_name, last_name, registration_date) " +
+            "VALUES (:telegramId, :username, :firstName, :lastName, NOW()) " +
+            "ON CONFLICT (telegram_id) DO NOTHING",
+            nativeQuery = true)
+    int insertIfNotExists(@Param("telegramId") Long telegramId,
+                          @Param("username") String username,
+                          @Param("firstName") String firstName,
+                          @Param("lastName") String lastName);
 }
\ No newline at end of file
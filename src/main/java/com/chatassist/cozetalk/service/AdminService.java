@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -35,10 +36,15 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class AdminService {
 
+    // Записи журнала на странице пользователя, включая архивные
+    private static final int RECENT_LOGS_LIMIT = 100;
+
     private final UserRepository userRepository;
     private final SubscriptionRepository subscriptionRepository;
     private final PaymentRepository paymentRepository;
     private final RequestLogRepository requestLogRepository;
+    private final RequestLogService requestLogService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${admin.email:admin@example.com}")
     private String adminEmail;
@@ -114,9 +120,12 @@ public class AdminService {
 
         subscription.setTariffPlan(tariffPlan);
         subscription.setDailyLimit(tariffPlan.getDailyLimit());
-        subscription.setRemainingRequests(durationMonths * 30 * tariffPlan.getDailyLimit()); // Примерно на весь срок
+        // Примерно на весь срок; для безлимитного тарифа без переполнения
+        subscription.setRemainingRequests((int) Math.min(Integer.MAX_VALUE,
+                (long) durationMonths * 30 * tariffPlan.getDailyLimit()));
 
         subscriptionRepository.save(subscription);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(telegramId));
         log.info("Админ добавил подписку {} на {} месяцев для пользователя с ID {}",
                 tariffPlan, durationMonths, telegramId);
 
@@ -149,6 +158,7 @@ public class AdminService {
         Subscription subscription = subscriptionOpt.get();
         subscription.setEndDate(LocalDateTime.now().minusSeconds(1)); // Установка времени окончания в прошлом
         subscriptionRepository.save(subscription);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(telegramId));
 
         log.info("Админ отключил подписку для пользователя с ID {}", telegramId);
         return true;
@@ -187,7 +197,7 @@ public class AdminService {
         User user = userOpt.get();
         Optional<Subscription> subscriptionOpt = subscriptionRepository.findByUser(user);
         List<Payment> payments = paymentRepository.findByUserOrderByCreatedAtDesc(user);
-        List<RequestLog> recentLogs = requestLogRepository.findByUserOrderByRequestTimeDesc(user, null);
+        List<RequestLog> recentLogs = requestLogService.getLogsByUser(user, RECENT_LOGS_LIMIT);
 
         Map<String, Object> details = new HashMap<>();
         details.put("user", user);
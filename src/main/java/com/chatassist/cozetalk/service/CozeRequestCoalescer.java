@@ -0,0 +1,67 @@
+package com.chatassist.cozetalk.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.springframework.stereotype.Component;
+
+import com.chatassist.cozetalk.domain.dto.CozeRequest;
+import com.chatassist.cozetalk.domain.dto.CozeResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Объединение одинаковых одновременных запросов к нейромодели (single-flight).
+ * Пока запрос с тем же ключом выполняется, новые вызывающие подписываются
+ * на уже идущий вызов Coze API вместо создания нового.
+ */
+@Component
+@Slf4j
+public class CozeRequestCoalescer {
+
+    private final ConcurrentHashMap<CozeRequestKey, Mono<CozeResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter coalescedCounter;
+
+    public CozeRequestCoalescer(MeterRegistry meterRegistry) {
+        this.coalescedCounter = Counter.builder("coze.singleflight.coalesced")
+                .description("Запросы к нейромодели, присоединенные к уже выполняющемуся одинаковому запросу")
+                .register(meterRegistry);
+        Gauge.builder("coze.singleflight.inflight", inFlight, ConcurrentHashMap::size)
+                .description("Количество различных запросов к нейромодели, выполняющихся в данный момент")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выполняет запрос или присоединяется к уже выполняющемуся одинаковому запросу.
+     *
+     * @param request Запрос к нейромодели
+     * @param call Вызов Coze API
+     * @return Mono с ответом, общий для всех одинаковых одновременных запросов
+     */
+    public Mono<CozeResponse> execute(CozeRequest request, Function<CozeRequest, Mono<CozeResponse>> call) {
+        CozeRequestKey key = CozeRequestKey.of(request);
+        boolean[] created = {false};
+
+        Mono<CozeResponse> shared = inFlight.computeIfAbsent(key, k -> {
+            created[0] = true;
+            AtomicReference<Mono<CozeResponse>> self = new AtomicReference<>();
+            self.set(Mono.defer(() -> call.apply(request))
+                    // Удаляем запись по завершении, но не чужую, созданную позже для того же ключа
+                    .doFinally(signal -> inFlight.remove(k, self.get()))
+                    .cache());
+            return self.get();
+        });
+
+        if (!created[0]) {
+            coalescedCounter.increment();
+            log.debug("Запрос присоединен к выполняющемуся одинаковому запросу");
+        }
+        return shared;
+    }
+}
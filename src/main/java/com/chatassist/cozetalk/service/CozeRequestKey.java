@@ -0,0 +1,29 @@
+package com.chatassist.cozetalk.service;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import com.chatassist.cozetalk.domain.dto.CozeRequest;
+
+/**
+ * Ключ запроса к нейромодели: нормализованный текст запроса и параметры генерации.
+ * Запросы с одинаковым ключом дают взаимозаменяемые ответы.
+ */
+record CozeRequestKey(String prompt, Integer maxTokens, Double temperature) {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    static CozeRequestKey of(CozeRequest request) {
+        return new CozeRequestKey(normalize(request.getPrompt()), request.getMaxTokens(), request.getTemperature());
+    }
+
+    /**
+     * Приводит запрос к каноническому виду: без лишних пробелов и без учета регистра.
+     */
+    private static String normalize(String prompt) {
+        if (prompt == null) {
+            return "";
+        }
+        return WHITESPACE.matcher(prompt.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+}
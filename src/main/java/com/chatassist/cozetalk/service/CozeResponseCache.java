@@ -0,0 +1,98 @@
+package com.chatassist.cozetalk.service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.chatassist.cozetalk.domain.dto.CozeRequest;
+import com.chatassist.cozetalk.domain.dto.CozeResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Кэш ответов нейромодели на точно совпадающие запросы.
+ * Ключ - нормализованный текст запроса вместе с параметрами генерации,
+ * размер ограничен объемом занимаемой памяти, записи устаревают по TTL.
+ * Статистика попаданий, промахов и вытеснений публикуется в Actuator.
+ */
+@Component
+@Slf4j
+public class CozeResponseCache {
+
+    // Приблизительные накладные расходы на запись: объекты ключа, ответа и узла кэша
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final Cache<CozeRequestKey, CozeResponse> cache;
+    private final boolean enabled;
+
+    public CozeResponseCache(MeterRegistry meterRegistry,
+                             @Value("${coze.cache.enabled:true}") boolean enabled,
+                             @Value("${coze.cache.max-size-mb:64}") long maxSizeMb,
+                             @Value("${coze.cache.ttl-minutes:60}") long ttlMinutes) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSizeMb * 1024 * 1024)
+                .weigher(CozeResponseCache::weigh)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "coze.responses");
+    }
+
+    /**
+     * Ищет сохраненный ответ на запрос с теми же параметрами генерации.
+     *
+     * @param request Запрос к нейромодели
+     * @return Сохраненный ответ, если он есть
+     */
+    public Optional<CozeResponse> get(CozeRequest request) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.getIfPresent(CozeRequestKey.of(request)));
+    }
+
+    /**
+     * Сохраняет ответ на запрос.
+     *
+     * @param request Запрос к нейромодели
+     * @param response Ответ нейромодели
+     */
+    public void put(CozeRequest request, CozeResponse response) {
+        if (!enabled || response == null || response.getContent() == null || response.getContent().isEmpty()) {
+            return;
+        }
+        cache.put(CozeRequestKey.of(request), response);
+    }
+
+    /**
+     * Очищает кэш.
+     *
+     * @return Количество удаленных записей
+     */
+    public long purge() {
+        long size = cache.estimatedSize();
+        cache.invalidateAll();
+        log.info("Кэш ответов нейромодели очищен, удалено записей: {}", size);
+        return size;
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static int weigh(CozeRequestKey key, CozeResponse response) {
+        // Строки Java занимают до двух байт на символ
+        long bytes = ENTRY_OVERHEAD_BYTES
+                + 2L * key.prompt().length()
+                + 2L * (response.getContent() != null ? response.getContent().length() : 0);
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+}
@@ -2,22 +2,22 @@ package com.chatassist.cozetalk.service;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import com.chatassist.cozetalk.client.CozeApiClient;
-import com.chatassist.cozetalk.domain.RequestLog;
-import com.chatassist.cozetalk.domain.User;
+import com.chatassist.cozetalk.client.CozeCallScheduler;
 import com.chatassist.cozetalk.domain.dto.CozeRequest;
 import com.chatassist.cozetalk.domain.dto.CozeResponse;
-import com.chatassist.cozetalk.repository.RequestLogRepository;
-import com.chatassist.cozetalk.repository.UserRepository;
+import com.chatassist.cozetalk.domain.dto.UpdateContext;
 import com.chatassist.cozetalk.exception.CozeApiException;
 
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
@@ -25,47 +25,137 @@ import reactor.core.publisher.Mono;
 @Slf4j
 public class CozeService {
 
+    private static final String STATUS_SUCCESS = "SUCCESS";
+    // Ответ выдан из кэша и не учитывается в дневном лимите
+    private static final String STATUS_CACHED = "CACHED";
+    // Получатель отказался от ответа до его завершения; запрос возвращен в лимит
+    private static final String STATUS_CANCELLED = "CANCELLED";
+
     private final CozeApiClient cozeApiClient;
-    private final RequestLogRepository requestLogRepository;
-    private final UserRepository userRepository;
+    private final RequestLogWriter requestLogWriter;
+    private final CozeResponseCache cozeResponseCache;
+    private final CozeRequestCoalescer cozeRequestCoalescer;
+    private final CozeCallScheduler cozeCallScheduler;
+
+    public Mono<CozeResponse> processQuery(UpdateContext context, String query, QuotaReservation reservation) {
+        RequestLogWriter.Entry requestLog = createRequestLog(context, query);
+        Instant startTime = Instant.now();
+        CozeRequest request = createRequest(query);
+
+        // Повторный запрос обслуживается из кэша без обращения к Coze API
+        Optional<CozeResponse> cached = cozeResponseCache.get(request);
+        if (cached.isPresent()) {
+            // Ответ из кэша не расходует лимит
+            reservation.refund();
+            completeRequestLog(requestLog, cached.get().getContent(), STATUS_CACHED, startTime);
+            return Mono.just(cached.get());
+        }
 
-    @Transactional
-    public Mono<CozeResponse> processQuery(Long telegramId, String query) {
-        User user = userRepository.findByTelegramId(telegramId)
-                .orElseThrow(() -> new EntityNotFoundException("Пользователь не найден"));
+        // Одинаковые одновременные запросы выполняются одним вызовом, журнал ведется для каждого
+        AtomicBoolean finished = new AtomicBoolean();
+        return cozeRequestCoalescer.execute(request, coalesced -> cozeCallScheduler.schedule(
+                        context.getTariffPlan(), context.getTelegramId(), () -> cozeApiClient.sendMessage(coalesced)))
+                .doOnNext(response -> {
+                    finished.set(true);
+                    reservation.commit();
+                    cozeResponseCache.put(request, response);
+                    completeRequestLog(requestLog, response.getContent(), STATUS_SUCCESS, startTime);
+                })
+                .doOnCancel(() -> {
+                    if (finished.compareAndSet(false, true)) {
+                        reservation.refund();
+                        completeRequestLog(requestLog, null, STATUS_CANCELLED, startTime);
+                    }
+                })
+                .doOnError(error -> {
+                    finished.set(true);
+                    // Запрос без ответа не расходует лимит
+                    reservation.refund();
+                    failRequestLog(requestLog, error, startTime);
 
-        // Создаем запись о запросе
-        RequestLog requestLog = new RequestLog();
-        requestLog.setUser(user);
-        requestLog.setRequestText(query);
-        requestLog.setStatus("PROCESSING");
-        requestLogRepository.save(requestLog);
+                    throw new CozeApiException("Ошибка при обработке запроса: " + error.getMessage(), error);
+                });
+    }
 
+    /**
+     * Обрабатывает запрос в потоковом режиме.
+     * Полный текст ответа сохраняется в журнал запросов после завершения потока.
+     *
+     * @param context Контекст обновления с пользователем и его тарифом
+     * @param query Текст запроса
+     * @param reservation Резерв запроса из лимита пользователя
+     * @return Поток фрагментов текста ответа
+     */
+    public Flux<String> streamQuery(UpdateContext context, String query, QuotaReservation reservation) {
+        RequestLogWriter.Entry requestLog = createRequestLog(context, query);
         Instant startTime = Instant.now();
+        StringBuilder content = new StringBuilder();
+        CozeRequest request = createRequest(query);
 
+        Optional<CozeResponse> cached = cozeResponseCache.get(request);
+        if (cached.isPresent()) {
+            // Ответ из кэша не расходует лимит
+            reservation.refund();
+            completeRequestLog(requestLog, cached.get().getContent(), STATUS_CACHED, startTime);
+            return Flux.just(cached.get().getContent());
+        }
+
+        AtomicBoolean finished = new AtomicBoolean();
+        return cozeCallScheduler.scheduleMany(context.getTariffPlan(), context.getTelegramId(),
+                        () -> cozeApiClient.streamMessage(request))
+                .doOnNext(content::append)
+                .doOnComplete(() -> {
+                    finished.set(true);
+                    reservation.commit();
+                    CozeResponse response = new CozeResponse();
+                    response.setContent(content.toString());
+                    cozeResponseCache.put(request, response);
+                    completeRequestLog(requestLog, response.getContent(), STATUS_SUCCESS, startTime);
+                })
+                .doOnCancel(() -> {
+                    if (finished.compareAndSet(false, true)) {
+                        // Сохраняется полученная до отмены часть ответа
+                        reservation.refund();
+                        completeRequestLog(requestLog, content.toString(), STATUS_CANCELLED, startTime);
+                    }
+                })
+                .onErrorMap(error -> {
+                    finished.set(true);
+                    reservation.refund();
+                    failRequestLog(requestLog, error, startTime);
+                    return new CozeApiException("Ошибка при обработке запроса: " + error.getMessage(), error);
+                });
+    }
+
+    private RequestLogWriter.Entry createRequestLog(UpdateContext context, String query) {
+        if (!context.isRegistered()) {
+            throw new EntityNotFoundException("Пользователь не найден");
+        }
+
+        // Создаем запись о запросе; сохраняется в базу данных пакетами в фоне
+        return requestLogWriter.start(context.getUserId(), query);
+    }
+
+    private CozeRequest createRequest(String query) {
         CozeRequest request = new CozeRequest();
         request.setPrompt(query);
         request.setMaxTokens(2048);
         request.setTemperature(0.7);
+        return request;
+    }
 
-        return cozeApiClient.sendMessage(request)
-                .doOnNext(response -> {
-                    // Обновляем запись о запросе с результатом
-                    requestLog.setResponseText(response.getContent());
-                    requestLog.setStatus("SUCCESS");
-                    requestLog.setProcessTime((int) Duration.between(startTime, Instant.now()).toMillis());
-                    requestLogRepository.save(requestLog);
-                })
-                .doOnError(error -> {
-                    // Обновляем запись о запросе с ошибкой
-                    requestLog.setResponseText("Ошибка: " + error.getMessage());
-                    requestLog.setStatus("ERROR");
-                    requestLog.setProcessTime((int) Duration.between(startTime, Instant.now()).toMillis());
-                    requestLogRepository.save(requestLog);
+    private void completeRequestLog(RequestLogWriter.Entry requestLog, String responseText, String status,
+                                    Instant startTime) {
+        // Обновляем запись о запросе с результатом
+        requestLogWriter.complete(requestLog, responseText, status,
+                (int) Duration.between(startTime, Instant.now()).toMillis());
+    }
 
-                    log.error("Ошибка при обработке запроса: {}", error.getMessage(), error);
+    private void failRequestLog(RequestLogWriter.Entry requestLog, Throwable error, Instant startTime) {
+        // Обновляем запись о запросе с ошибкой
+        requestLogWriter.complete(requestLog, "Ошибка: " + error.getMessage(), "ERROR",
+                (int) Duration.between(startTime, Instant.now()).toMillis());
 
-                    throw new CozeApiException("Ошибка при обработке запроса: " + error.getMessage(), error);
-                });
+        log.error("Ошибка при обработке запроса: {}", error.getMessage(), error);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,264 @@
+package com.chatassist.cozetalk.service;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.chatassist.cozetalk.util.ConcurrentLongIntMap;
+import com.chatassist.cozetalk.util.LongHashSet;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Счетчики дневного использования запросов в памяти.
+ * Проверка лимита стоит одного обращения к отображению в памяти вместо COUNT по request_logs.
+ * Счетчики восстанавливаются из базы данных при запуске, сбрасываются в начале нового дня
+ * и периодически сохраняются в user_daily_usage.
+ */
+@Service
+@Slf4j
+public class DailyQuotaService {
+
+    private static final String UPSERT_USAGE_SQL =
+            "INSERT INTO user_daily_usage (user_id, usage_date, request_count, updated_at) "
+                    + "SELECT u.id, ?, ?, NOW() FROM users u WHERE u.telegram_id = ? "
+                    + "ON CONFLICT (user_id, usage_date) DO UPDATE "
+                    + "SET request_count = EXCLUDED.request_count, updated_at = EXCLUDED.updated_at";
+
+    private static final String SELECT_STORED_USAGE_SQL =
+            "SELECT u.telegram_id, d.request_count FROM user_daily_usage d "
+                    + "JOIN users u ON u.id = d.user_id WHERE d.usage_date = ?";
+
+    // Ответы из кэша, запросы с ошибкой и отмененные запросы возвращаются в лимит и не учитываются
+    private static final String SELECT_LOGGED_USAGE_SQL =
+            "SELECT u.telegram_id, COUNT(*) FROM request_logs r "
+                    + "JOIN users u ON u.id = r.user_id "
+                    + "WHERE r.request_time >= ? AND r.status NOT IN ('CACHED', 'ERROR', 'CANCELLED') "
+                    + "GROUP BY u.telegram_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentLongIntMap counters;
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    // Пользователи, чьи счетчики изменились с момента последнего сохранения
+    private LongHashSet dirty;
+    private final Object dirtyLock = new Object();
+    private final int expectedUsers;
+
+    private volatile LocalDate currentDay;
+    private volatile long nextDayStartMillis;
+    // Счетчики прошедшего дня, которые осталось сохранить после смены дня
+    private DayUsage finished;
+    // Сохранения выполняются по очереди, чтобы более старый снимок не перезаписал новый
+    private final Object flushLock = new Object();
+
+    private final Timer flushTimer;
+
+    public DailyQuotaService(JdbcTemplate jdbcTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${quota.expected-users:10000}") int expectedUsers) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.expectedUsers = expectedUsers;
+        this.counters = new ConcurrentLongIntMap(expectedUsers, Runtime.getRuntime().availableProcessors());
+        this.dirty = new LongHashSet(expectedUsers);
+
+        this.flushTimer = Timer.builder("quota.flush")
+                .description("Время сохранения дневных счетчиков запросов")
+                .register(meterRegistry);
+        Gauge.builder("quota.users.today", counters, ConcurrentLongIntMap::size)
+                .description("Количество пользователей, делавших запросы сегодня")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Восстанавливает счетчики текущего дня. Берется наибольшее из сохраненного значения
+     * и количества запросов в журнале, поэтому несохраненные перед остановкой изменения не теряются.
+     */
+    @PostConstruct
+    public void rebuild() {
+        LocalDate today = LocalDate.now(zoneId);
+        startDay(today);
+
+        jdbcTemplate.query(SELECT_STORED_USAGE_SQL,
+                rs -> {
+                    counters.put(rs.getLong(1), rs.getInt(2));
+                },
+                Date.valueOf(today));
+        jdbcTemplate.query(SELECT_LOGGED_USAGE_SQL,
+                rs -> {
+                    long telegramId = rs.getLong(1);
+                    int logged = rs.getInt(2);
+                    if (logged > counters.get(telegramId)) {
+                        counters.put(telegramId, logged);
+                    }
+                },
+                Timestamp.valueOf(today.atStartOfDay()));
+
+        log.info("Восстановлены дневные счетчики запросов для {} пользователей", counters.size());
+    }
+
+    /**
+     * Возвращает количество запросов пользователя за текущий день.
+     *
+     * @param telegramId ID пользователя в Telegram
+     * @return Количество запросов
+     */
+    public int getUsedToday(long telegramId) {
+        rollOverIfNeeded();
+        return counters.get(telegramId);
+    }
+
+    /**
+     * Атомарно учитывает запрос пользователя, если дневной лимит еще не исчерпан.
+     *
+     * @param telegramId ID пользователя в Telegram
+     * @param dailyLimit Дневной лимит запросов
+     * @return День, в котором учтен запрос, или null, если лимит исчерпан
+     */
+    public LocalDate tryIncrement(long telegramId, int dailyLimit) {
+        rollOverIfNeeded();
+        LocalDate day = currentDay;
+        if (counters.incrementIfLessThan(telegramId, dailyLimit) < 0) {
+            return null;
+        }
+        markDirty(telegramId);
+        return day;
+    }
+
+    /**
+     * Отменяет учет ранее учтенного запроса. Запрос прошедшего дня не возвращается:
+     * его счетчик уже сброшен, а новый день начинается с полного лимита.
+     *
+     * @param telegramId ID пользователя в Telegram
+     * @param day День, в котором учтен запрос
+     */
+    public void decrement(long telegramId, LocalDate day) {
+        rollOverIfNeeded();
+        if (!day.equals(currentDay)) {
+            log.debug("Возврат запроса пользователя {} за прошедший день {} пропущен", telegramId, day);
+            return;
+        }
+        counters.decrementIfPositive(telegramId);
+        markDirty(telegramId);
+    }
+
+    /**
+     * Сохраняет измененные счетчики в базу данных.
+     * Потоки обработки запросов не ждут сохранения: блокировка смены дня удерживается
+     * только на время снимка счетчиков в памяти.
+     */
+    @Scheduled(fixedDelayString = "${quota.flush-interval-ms:5000}")
+    public void flush() {
+        synchronized (flushLock) {
+            DayUsage previous;
+            DayUsage changed;
+            synchronized (this) {
+                previous = finished;
+                finished = null;
+                changed = takeChanged(currentDay);
+            }
+
+            if (previous != null && !save(previous)) {
+                synchronized (this) {
+                    if (finished == null) {
+                        finished = previous;
+                    }
+                }
+            }
+            if (changed != null && !save(changed)) {
+                // Сохраним при следующей попытке, если день не сменился
+                synchronized (this) {
+                    if (changed.day().equals(currentDay)) {
+                        changed.rows().forEach(row -> markDirty((Long) row[2]));
+                    } else if (finished == null) {
+                        finished = changed;
+                    }
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Снимок измененных счетчиков; вызывается под блокировкой смены дня.
+     *
+     * @return Снимок или null, если изменений нет
+     */
+    private DayUsage takeChanged(LocalDate day) {
+        LongHashSet changed;
+        synchronized (dirtyLock) {
+            if (dirty.size() == 0) {
+                return null;
+            }
+            changed = dirty;
+            dirty = new LongHashSet(expectedUsers);
+        }
+
+        List<Object[]> rows = new ArrayList<>(changed.size());
+        Date usageDate = Date.valueOf(day);
+        changed.forEach(telegramId -> rows.add(new Object[]{usageDate, counters.get(telegramId), telegramId}));
+        return new DayUsage(day, rows);
+    }
+
+    private boolean save(DayUsage usage) {
+        try {
+            flushTimer.record(() -> jdbcTemplate.batchUpdate(UPSERT_USAGE_SQL, usage.rows()));
+            log.debug("Сохранены дневные счетчики запросов за {}: {}", usage.day(), usage.rows().size());
+            return true;
+        } catch (Exception e) {
+            log.error("Ошибка сохранения дневных счетчиков запросов: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private void markDirty(long telegramId) {
+        synchronized (dirtyLock) {
+            dirty.add(telegramId);
+        }
+    }
+
+    private void rollOverIfNeeded() {
+        if (System.currentTimeMillis() < nextDayStartMillis) {
+            return;
+        }
+        synchronized (this) {
+            LocalDate today = LocalDate.now(zoneId);
+            if (today.equals(currentDay)) {
+                return;
+            }
+            // Счетчики прошедшего дня сохранятся при следующем сбросе, без JDBC в вызывающем потоке
+            DayUsage previous = takeChanged(currentDay);
+            if (previous != null) {
+                finished = previous;
+            }
+            counters.clear();
+            startDay(today);
+            log.info("Дневные счетчики запросов сброшены для {}", today);
+        }
+    }
+
+    private void startDay(LocalDate day) {
+        currentDay = day;
+        nextDayStartMillis = day.plusDays(1).atStartOfDay(zoneId).toInstant().toEpochMilli();
+    }
+
+    private record DayUsage(LocalDate day, List<Object[]> rows) {
+    }
+}
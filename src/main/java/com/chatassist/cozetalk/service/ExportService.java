@@ -0,0 +1,150 @@
+package com.chatassist.cozetalk.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.query.SelectionQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.chatassist.cozetalk.domain.enums.ExportFormat;
+import com.chatassist.cozetalk.domain.enums.PaymentStatus;
+import com.chatassist.cozetalk.util.ExportWriter;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Потоковая выгрузка журнала запросов и платежей.
+ * Строки читаются курсором базы данных через сессию без контекста персистентности
+ * и сразу записываются в поток вывода, поэтому память не растет с размером таблицы.
+ * Выбираются проекции, а не сущности: связанные пользователи не загружаются отдельными запросами.
+ */
+@Service
+@Slf4j
+public class ExportService {
+
+    private static final List<String> REQUEST_LOG_COLUMNS = List.of(
+            "id", "telegram_id", "request_time", "status", "process_time", "request_text", "response_text");
+
+    private static final List<String> PAYMENT_COLUMNS = List.of(
+            "id", "telegram_id", "payment_id", "amount", "currency", "status", "tariff_plan",
+            "created_at", "updated_at");
+
+    private final SessionFactory sessionFactory;
+    private final int fetchSize;
+
+    public ExportService(EntityManagerFactory entityManagerFactory,
+                         @Value("${export.fetch-size:1000}") int fetchSize) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Выгружает журнал запросов.
+     *
+     * @param from Начало периода включительно или null
+     * @param to Конец периода не включительно или null
+     * @param status Статус обработки или null для всех
+     * @return Количество выгруженных записей
+     */
+    public long exportRequestLogs(LocalDateTime from, LocalDateTime to, String status,
+                                  ExportFormat format, OutputStream out) throws IOException {
+        StringBuilder jpql = new StringBuilder(
+                "SELECT r.id, u.telegramId, r.requestTime, r.status, r.processTime, r.requestText, r.responseText, r.plainResponseText "
+                        + "FROM RequestLog r JOIN r.user u WHERE 1 = 1");
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        // Условия по request_time позволяют исключить ненужные секции журнала
+        addRange(jpql, parameters, "r.requestTime", from, to);
+        if (status != null) {
+            jpql.append(" AND r.status = :status");
+            parameters.put("status", status);
+        }
+        jpql.append(" ORDER BY r.requestTime");
+
+        // Ответ хранится в одном из двух столбцов в зависимости от request-log.compression.enabled
+        return export(jpql.toString(), parameters, REQUEST_LOG_COLUMNS, format, out, row -> {
+            Object[] values = Arrays.copyOf(row, row.length - 1);
+            if (values[values.length - 1] == null) {
+                values[values.length - 1] = row[row.length - 1];
+            }
+            return values;
+        });
+    }
+
+    /**
+     * Выгружает платежи.
+     *
+     * @param from Начало периода по дате создания включительно или null
+     * @param to Конец периода не включительно или null
+     * @param status Статус платежа или null для всех
+     * @return Количество выгруженных записей
+     */
+    public long exportPayments(LocalDateTime from, LocalDateTime to, PaymentStatus status,
+                               ExportFormat format, OutputStream out) throws IOException {
+        StringBuilder jpql = new StringBuilder(
+                "SELECT p.id, u.telegramId, p.paymentId, p.amount, p.currency, p.status, p.tariffPlan, "
+                        + "p.createdAt, p.updatedAt FROM Payment p JOIN p.user u WHERE 1 = 1");
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        addRange(jpql, parameters, "p.createdAt", from, to);
+        if (status != null) {
+            jpql.append(" AND p.status = :status");
+            parameters.put("status", status);
+        }
+        jpql.append(" ORDER BY p.createdAt");
+
+        return export(jpql.toString(), parameters, PAYMENT_COLUMNS, format, out, UnaryOperator.identity());
+    }
+
+    private long export(String jpql, Map<String, Object> parameters, List<String> columns,
+                        ExportFormat format, OutputStream out, UnaryOperator<Object[]> rowMapper) throws IOException {
+        long rows = 0;
+        try (StatelessSession session = sessionFactory.openStatelessSession();
+             ExportWriter writer = ExportWriter.create(format, out, columns)) {
+            // Курсор PostgreSQL с размером выборки работает только внутри транзакции
+            Transaction transaction = session.beginTransaction();
+            try {
+                SelectionQuery<Object[]> query = session.createSelectionQuery(jpql, Object[].class)
+                        .setFetchSize(fetchSize)
+                        .setReadOnly(true);
+                for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+                    query.setParameter(parameter.getKey(), parameter.getValue());
+                }
+
+                try (Stream<Object[]> stream = query.getResultStream()) {
+                    for (Object[] row : (Iterable<Object[]>) stream::iterator) {
+                        writer.writeRow(rowMapper.apply(row));
+                        rows++;
+                    }
+                }
+            } finally {
+                // Выгрузка ничего не изменяет
+                transaction.rollback();
+            }
+        }
+        log.info("Выгружено {} записей в формате {}", rows, format);
+        return rows;
+    }
+
+    private static void addRange(StringBuilder jpql, Map<String, Object> parameters, String attribute,
+                                 LocalDateTime from, LocalDateTime to) {
+        if (from != null) {
+            jpql.append(" AND ").append(attribute).append(" >= :from");
+            parameters.put("from", from);
+        }
+        if (to != null) {
+            jpql.append(" AND ").append(attribute).append(" < :to");
+            parameters.put("to", to);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.chatassist.cozetalk.service;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.chatassist.cozetalk.util.LongHashSet;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Множество Telegram ID зарегистрированных пользователей в памяти.
+ * Заполняется из таблицы users при запуске, поэтому проверка регистрации
+ * для уже известного пользователя не требует обращения к базе данных.
+ * Отсутствие ID в индексе не означает, что пользователя нет в базе данных -
+ * такой случай обрабатывается вставкой с ON CONFLICT DO NOTHING.
+ */
+@Component
+@Slf4j
+public class KnownUserIndex {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LongHashSet telegramIds;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public KnownUserIndex(JdbcTemplate jdbcTemplate,
+                          MeterRegistry meterRegistry,
+                          @Value("${users.index.expected-size:10000}") int expectedSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.telegramIds = new LongHashSet(expectedSize);
+
+        Gauge.builder("users.known", this, KnownUserIndex::size)
+                .description("Количество пользователей в индексе зарегистрированных")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            jdbcTemplate.query("SELECT telegram_id FROM users", rs -> {
+                telegramIds.add(rs.getLong(1));
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Загружен индекс зарегистрированных пользователей: {}", size());
+    }
+
+    public boolean contains(long telegramId) {
+        lock.readLock().lock();
+        try {
+            return telegramIds.contains(telegramId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(long telegramId) {
+        lock.writeLock().lock();
+        try {
+            telegramIds.add(telegramId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long telegramId) {
+        lock.writeLock().lock();
+        try {
+            telegramIds.remove(telegramId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return telegramIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
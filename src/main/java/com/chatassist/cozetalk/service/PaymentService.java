@@ -10,6 +10,7 @@ import java.util.Optional;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.chatassist.cozetalk.client.YooKassaApiClient;
 import com.chatassist.cozetalk.domain.Payment;
@@ -25,6 +26,7 @@ import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 @Service
 @RequiredArgsConstructor
@@ -34,8 +36,13 @@ public class PaymentService {
     private final PaymentRepository paymentRepository;
     private final YooKassaApiClient yooKassaApiClient;
     private final SubscriptionService subscriptionService;
+    private final TransactionTemplate transactionTemplate;
+    private final Scheduler jdbcScheduler;
 
-    @Transactional
+    /**
+     * Создает платеж в ЮKassa и сохраняет его.
+     * Запись платежа выполняется в отдельной транзакции на пуле JDBC, а не в потоке Netty.
+     */
     public Mono<PaymentResponse> createPayment(User user, TariffPlan tariffPlan, String returnUrl) {
         PaymentRequest request = new PaymentRequest();
         request.setAmount(new Amount(BigDecimal.valueOf(tariffPlan.getPriceInRubles()), "RUB"));
@@ -51,19 +58,21 @@ public class PaymentService {
         request.setConfirmation(new Confirmation("redirect", returnUrl));
 
         return yooKassaApiClient.createPayment(request)
-                .doOnNext(response -> {
-                    // Сохранение записи о платеже
-                    Payment payment = new Payment();
-                    payment.setUser(user);
-                    payment.setPaymentId(response.getId());
-                    payment.setAmount(response.getAmount().getValue());
-                    payment.setCurrency(response.getAmount().getCurrency());
-                    payment.setStatus(PaymentStatus.PENDING);
-                    payment.setTariffPlan(tariffPlan);
-
-                    paymentRepository.save(payment);
-                    log.info("Создан новый платеж: {}", payment);
-                });
+                .flatMap(response -> Mono.fromRunnable(() -> transactionTemplate.executeWithoutResult(status -> {
+                            // Сохранение записи о платеже
+                            Payment payment = new Payment();
+                            payment.setUser(user);
+                            payment.setPaymentId(response.getId());
+                            payment.setAmount(response.getAmount().getValue());
+                            payment.setCurrency(response.getAmount().getCurrency());
+                            payment.setStatus(PaymentStatus.PENDING);
+                            payment.setTariffPlan(tariffPlan);
+
+                            paymentRepository.save(payment);
+                            log.info("Создан новый платеж: {}", payment);
+                        }))
+                        .subscribeOn(jdbcScheduler)
+                        .thenReturn(response));
     }
 
     @Transactional
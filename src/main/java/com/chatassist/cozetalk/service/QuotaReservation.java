@@ -0,0 +1,44 @@
+package com.chatassist.cozetalk.service;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Резерв одного запроса пользователя из дневного лимита и остатка подписки.
+ * Завершается ровно один раз: подтверждением после успешного ответа
+ * или возвратом, если ответ не был получен либо был выдан из кэша.
+ * Резерв относится к дню, в котором учтен: возврат после полуночи не уменьшает счетчик нового дня.
+ */
+public class QuotaReservation {
+
+    private final Long telegramId;
+    private final LocalDate day;
+    private final SubscriptionService subscriptionService;
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    QuotaReservation(Long telegramId, LocalDate day, SubscriptionService subscriptionService) {
+        this.telegramId = telegramId;
+        this.day = day;
+        this.subscriptionService = subscriptionService;
+    }
+
+    public Long getTelegramId() {
+        return telegramId;
+    }
+
+    /**
+     * Подтверждает списание запроса.
+     */
+    public void commit() {
+        completed.set(true);
+    }
+
+    /**
+     * Возвращает зарезервированный запрос пользователю.
+     */
+    public void refund() {
+        if (completed.compareAndSet(false, true)) {
+            subscriptionService.refundRequest(telegramId, day);
+        }
+    }
+}
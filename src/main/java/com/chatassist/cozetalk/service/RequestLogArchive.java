@@ -0,0 +1,197 @@
+package com.chatassist.cozetalk.service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.chatassist.cozetalk.util.RequestLogSegment;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Холодный архив журнала запросов в колоночных сегментах на локальном диске.
+ * Перед удалением устаревшей месячной секции ее записи сохраняются в сегмент с тем же именем,
+ * поэтому аналитика и просмотр журнала администратором доступны и после удаления секции.
+ * Сегмент записывается во временный файл и переименовывается после синхронизации с диском,
+ * так что читатели не видят недописанных сегментов.
+ */
+@Service
+@Slf4j
+public class RequestLogArchive {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ResponseTextCompressor responseTextCompressor;
+    private final boolean enabled;
+    private final Path directory;
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    private final Timer archiveTimer;
+    private final Timer scanTimer;
+
+    public RequestLogArchive(JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             ResponseTextCompressor responseTextCompressor,
+                             MeterRegistry meterRegistry,
+                             @Value("${request-log.archive.enabled:true}") boolean enabled,
+                             @Value("${request-log.archive.directory:data/archive/request-logs}") String directory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.responseTextCompressor = responseTextCompressor;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+
+        this.archiveTimer = Timer.builder("request-log.archive.write")
+                .description("Время архивации секции журнала запросов")
+                .register(meterRegistry);
+        this.scanTimer = Timer.builder("request-log.archive.scan")
+                .description("Время чтения архива журнала запросов")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Сохраняет записи секции в архивный сегмент. Повторный вызов для уже
+     * архивированной секции ничего не делает.
+     *
+     * @param partition Имя секции журнала запросов
+     * @return Количество архивированных записей
+     */
+    public long archivePartition(String partition) throws IOException {
+        Path segment = directory.resolve(partition + SEGMENT_SUFFIX);
+        if (Files.exists(segment)) {
+            log.info("Секция {} уже архивирована: {}", partition, segment);
+            return 0;
+        }
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(partition + SEGMENT_SUFFIX + ".tmp");
+
+        long rows;
+        Timer.Sample sample = Timer.start();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            rows = writeSegment(partition, out);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, segment, StandardCopyOption.ATOMIC_MOVE);
+        sample.stop(archiveTimer);
+
+        log.info("Секция {} архивирована: {} записей, {} байт", partition, rows, Files.size(segment));
+        return rows;
+    }
+
+    /**
+     * Ищет архивные записи пользователя, начиная с самых новых.
+     *
+     * @param userId ID пользователя в базе данных
+     * @param before Искать записи раньше этого момента
+     * @param limit Максимальное количество записей
+     * @return Записи в порядке убывания времени запроса
+     */
+    public List<RequestLogSegment.Row> findByUser(long userId, LocalDateTime before, int limit) {
+        List<RequestLogSegment.Row> result = new ArrayList<>();
+        if (!enabled || limit <= 0 || !Files.isDirectory(directory)) {
+            return result;
+        }
+        long toMillis = before.atZone(zoneId).toInstant().toEpochMilli();
+
+        scanTimer.record(() -> {
+            // Имена сегментов request_logs_YYYY_MM упорядочены по времени
+            for (Path segment : listSegments()) {
+                List<RequestLogSegment.Row> rows = new ArrayList<>();
+                try {
+                    RequestLogSegment.scan(segment, Long.MIN_VALUE, toMillis, userId, rows::add);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows.sort(Comparator.comparingLong(RequestLogSegment.Row::requestTimeMillis).reversed());
+                for (RequestLogSegment.Row row : rows) {
+                    if (result.size() == limit) {
+                        return;
+                    }
+                    result.add(row);
+                }
+            }
+        });
+        return result;
+    }
+
+    public LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zoneId);
+    }
+
+    private long writeSegment(String partition, OutputStream out) throws IOException {
+        RequestLogSegment.Writer writer = new RequestLogSegment.Writer(out);
+        // Потоковое чтение курсором PostgreSQL возможно только внутри транзакции
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            // Имя секции формируется приложением, а не вводом пользователя
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT id, user_id, request_time, request_text, response_text_z, status, process_time, "
+                            + "response_text FROM "
+                            + partition + " ORDER BY request_time, id");
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, rs -> {
+            byte[] response = rs.getBytes(5);
+            int processTimeValue = rs.getInt(7);
+            Integer processTime = rs.wasNull() ? null : processTimeValue;
+            try {
+                writer.append(new RequestLogSegment.Row(
+                        rs.getLong(1),
+                        rs.getLong(2),
+                        rs.getTimestamp(3).getTime(),
+                        rs.getString(6),
+                        processTime,
+                        rs.getString(4),
+                        response != null ? responseTextCompressor.decompress(response) : rs.getString(8)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        writer.close();
+        out.flush();
+        return writer.getRowCount();
+    }
+
+    private List<Path> listSegments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparing((Path file) -> file.getFileName().toString()).reversed())
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.chatassist.cozetalk.service;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Обслуживание месячных секций журнала запросов.
+ * Создает секции на несколько месяцев вперед и удаляет секции, все записи которых
+ * старше срока хранения logging.request.retention_days из system_settings.
+ * Удаление секции выполняется мгновенно и не оставляет "мертвых" строк, в отличие от DELETE.
+ * Перед удалением записи секции переносятся в архив {@link RequestLogArchive}.
+ * Записи, попавшие в секцию по умолчанию из-за отсутствия месячной секции,
+ * переносятся в месячную секцию при ее создании.
+ */
+@Service
+@Slf4j
+public class RequestLogPartitionMaintenance {
+
+    private static final String PARTITION_PREFIX = "request_logs_";
+    private static final String DEFAULT_PARTITION = "request_logs_default";
+    private static final Pattern PARTITION_NAME = Pattern.compile("request_logs_(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private static final String SELECT_PARTITIONS_SQL =
+            "SELECT c.relname FROM pg_inherits i "
+                    + "JOIN pg_class c ON c.oid = i.inhrelid "
+                    + "JOIN pg_class p ON p.oid = i.inhparent "
+                    + "WHERE p.relname = 'request_logs'";
+
+    private static final String COUNT_DEFAULT_ROWS_SQL =
+            "SELECT COUNT(*) FROM " + DEFAULT_PARTITION + " WHERE request_time >= ? AND request_time < ?";
+
+    // search_vector вычисляется при вставке и не переносится
+    private static final String MOVE_DEFAULT_ROWS_SQL =
+            "INSERT INTO request_logs (id, user_id, request_time, request_text, response_text_z, response_text, "
+                    + "status, process_time) "
+                    + "SELECT id, user_id, request_time, request_text, response_text_z, response_text, status, process_time "
+                    + "FROM " + DEFAULT_PARTITION + " WHERE request_time >= ? AND request_time < ?";
+
+    private static final String DELETE_DEFAULT_ROWS_SQL =
+            "DELETE FROM " + DEFAULT_PARTITION + " WHERE request_time >= ? AND request_time < ?";
+
+    private static final String SELECT_RETENTION_SQL =
+            "SELECT setting_value FROM system_settings WHERE setting_key = 'logging.request.retention_days'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RequestLogArchive requestLogArchive;
+    private final int monthsAhead;
+    private final int defaultRetentionDays;
+
+    public RequestLogPartitionMaintenance(JdbcTemplate jdbcTemplate,
+                                          TransactionTemplate transactionTemplate,
+                                          RequestLogArchive requestLogArchive,
+                                          @Value("${request-log.partitions.months-ahead:2}") int monthsAhead,
+                                          @Value("${request-log.partitions.retention-days:90}") int defaultRetentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.requestLogArchive = requestLogArchive;
+        this.monthsAhead = monthsAhead;
+        this.defaultRetentionDays = defaultRetentionDays;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    /**
+     * Создает недостающие будущие секции и удаляет устаревшие.
+     */
+    @Scheduled(cron = "${request-log.partitions.cron:0 30 3 * * ?}")
+    public synchronized void maintain() {
+        try {
+            createFuturePartitions();
+            dropExpiredPartitions();
+        } catch (Exception e) {
+            log.error("Ошибка обслуживания секций журнала запросов: {}", e.getMessage(), e);
+        }
+    }
+
+    private void createFuturePartitions() {
+        List<String> partitions = jdbcTemplate.queryForList(SELECT_PARTITIONS_SQL, String.class);
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            if (!partitions.contains(partitionName(month))) {
+                createPartition(month);
+            }
+        }
+    }
+
+    /**
+     * Создает месячную секцию. Если записи этого месяца уже попали в секцию по умолчанию,
+     * секция по умолчанию на время переноса отсоединяется: иначе PostgreSQL не даст
+     * создать секцию, пересекающуюся с ее записями.
+     */
+    private void createPartition(YearMonth month) {
+        String partition = partitionName(month);
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        // Имя и границы формируются приложением, а не вводом пользователя
+        String createSql = "CREATE TABLE IF NOT EXISTS " + partition
+                + " PARTITION OF request_logs FOR VALUES FROM ('" + from + "') TO ('" + to + "')";
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Long stray = jdbcTemplate.queryForObject(COUNT_DEFAULT_ROWS_SQL, Long.class, from, to);
+            if (stray == null || stray == 0) {
+                jdbcTemplate.execute(createSql);
+                return;
+            }
+            log.warn("Секция {} отсутствовала, {} записей попали в секцию по умолчанию и будут перенесены",
+                    partition, stray);
+            jdbcTemplate.execute("ALTER TABLE request_logs DETACH PARTITION " + DEFAULT_PARTITION);
+            jdbcTemplate.execute(createSql);
+            jdbcTemplate.update(MOVE_DEFAULT_ROWS_SQL, from, to);
+            jdbcTemplate.update(DELETE_DEFAULT_ROWS_SQL, from, to);
+            jdbcTemplate.execute("ALTER TABLE request_logs ATTACH PARTITION " + DEFAULT_PARTITION + " DEFAULT");
+        });
+        log.info("Создана секция журнала запросов: {}", partition);
+    }
+
+    private void dropExpiredPartitions() {
+        int retentionDays = retentionDays();
+        if (retentionDays <= 0) {
+            log.warn("Срок хранения журнала запросов не задан, устаревшие секции не удаляются");
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+        List<String> partitions = jdbcTemplate.queryForList(SELECT_PARTITIONS_SQL, String.class);
+
+        for (String partition : partitions) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            // Секция удаляется, только если устарела последняя ее запись
+            if (!month.plusMonths(1).atDay(1).isAfter(cutoff)) {
+                if (!archive(partition)) {
+                    continue;
+                }
+                jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+                log.info("Удалена устаревшая секция журнала запросов: {}", partition);
+            }
+        }
+    }
+
+    /**
+     * @return true, если секцию можно удалять: архив отключен или записи сохранены в архив
+     */
+    private boolean archive(String partition) {
+        if (!requestLogArchive.isEnabled()) {
+            return true;
+        }
+        try {
+            requestLogArchive.archivePartition(partition);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.error("Не удалось архивировать секцию {}, удаление отложено: {}", partition, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private int retentionDays() {
+        try {
+            List<String> values = jdbcTemplate.queryForList(SELECT_RETENTION_SQL, String.class);
+            if (!values.isEmpty() && values.get(0) != null) {
+                return Integer.parseInt(values.get(0).trim());
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Некорректный срок хранения журнала запросов в system_settings: {}", e.getMessage());
+        }
+        return defaultRetentionDays;
+    }
+
+    private static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(SUFFIX_FORMAT);
+    }
+}
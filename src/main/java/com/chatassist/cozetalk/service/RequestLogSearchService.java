@@ -0,0 +1,150 @@
+package com.chatassist.cozetalk.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.chatassist.cozetalk.domain.dto.RequestLogSearchHit;
+import com.chatassist.cozetalk.domain.dto.RequestLogSearchPage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Полнотекстовый поиск по журналу запросов для администраторов.
+ * Использует индекс GIN по search_vector и постраничный вывод по ключу (request_time, id):
+ * каждая следующая страница продолжает поиск с последней записи предыдущей, без OFFSET.
+ * Фрагменты с выделением строятся только для записей итоговой страницы.
+ * Период поиска всегда ограничен: без начала периода ищется за последние дни,
+ * а слишком длинный период отклоняется, поэтому просматриваются только секции периода,
+ * а не весь журнал при редком слове.
+ */
+@Service
+@Slf4j
+public class RequestLogSearchService {
+
+    private static final String TEXT_SEARCH_CONFIG = "russian";
+    private static final String HEADLINE_OPTIONS =
+            "StartSel=<mark>, StopSel=</mark>, MaxWords=25, MinWords=8, MaxFragments=2, FragmentDelimiter=\" … \"";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxPageSize;
+    private final int defaultPeriodDays;
+    private final int maxPeriodDays;
+    private final Timer searchTimer;
+
+    public RequestLogSearchService(JdbcTemplate jdbcTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${request-log.search.max-page-size:100}") int maxPageSize,
+                                   @Value("${request-log.search.default-period-days:30}") int defaultPeriodDays,
+                                   @Value("${request-log.search.max-period-days:92}") int maxPeriodDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxPageSize = maxPageSize;
+        this.defaultPeriodDays = defaultPeriodDays;
+        this.maxPeriodDays = maxPeriodDays;
+
+        this.searchTimer = Timer.builder("request-log.search")
+                .description("Время поиска по журналу запросов")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param query Поисковый запрос в синтаксисе websearch: слова, "фраза", or, -исключение
+     * @param telegramId Telegram ID пользователя или null
+     * @param status Статус обработки или null
+     * @param from Начало периода включительно или null для последних дней (request-log.search.default-period-days)
+     * @param to Конец периода не включительно или null для текущего момента
+     * @param beforeTime Время последней записи предыдущей страницы или null для первой страницы
+     * @param beforeId ID последней записи предыдущей страницы
+     * @param pageSize Размер страницы
+     * @return Страница результатов от новых записей к старым
+     * @throws IllegalArgumentException если период длиннее request-log.search.max-period-days или пуст
+     */
+    public RequestLogSearchPage search(String query, Long telegramId, String status,
+                                       LocalDateTime from, LocalDateTime to,
+                                       LocalDateTime beforeTime, Long beforeId, int pageSize) {
+        int limit = Math.max(1, Math.min(pageSize, maxPageSize));
+
+        // Без ограничения по времени редкое слово заставило бы просмотреть индексы всех секций
+        LocalDateTime periodEnd = to != null ? to : LocalDateTime.now();
+        LocalDateTime periodStart = from != null ? from : periodEnd.minusDays(defaultPeriodDays);
+        if (!periodStart.isBefore(periodEnd)) {
+            throw new IllegalArgumentException("Начало периода поиска должно быть раньше конца");
+        }
+        if (periodStart.isBefore(periodEnd.minusDays(maxPeriodDays))) {
+            throw new IllegalArgumentException("Период поиска не может превышать " + maxPeriodDays + " дней");
+        }
+
+        StringBuilder filter = new StringBuilder("r.search_vector @@ q.query");
+        List<Object> args = new ArrayList<>();
+        // Параметры в порядке их появления в SQL: настройки фрагмента, запрос, условия, лимит
+        args.add(HEADLINE_OPTIONS);
+        args.add(query);
+        if (telegramId != null) {
+            filter.append(" AND r.user_id = (SELECT id FROM users WHERE telegram_id = ?)");
+            args.add(telegramId);
+        }
+        if (status != null) {
+            filter.append(" AND r.status = ?");
+            args.add(status);
+        }
+        // Условия по request_time позволяют исключить ненужные секции журнала
+        filter.append(" AND r.request_time >= ?");
+        args.add(Timestamp.valueOf(periodStart));
+        if (to != null) {
+            filter.append(" AND r.request_time < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+        if (beforeTime != null) {
+            if (beforeId != null) {
+                filter.append(" AND (r.request_time, r.id) < (?, ?)");
+                args.add(Timestamp.valueOf(beforeTime));
+                args.add(beforeId);
+            } else {
+                filter.append(" AND r.request_time < ?");
+                args.add(Timestamp.valueOf(beforeTime));
+            }
+        }
+        // Лишняя запись показывает, есть ли следующая страница
+        args.add(limit + 1);
+
+        // Текст экранируется до ts_headline, чтобы в фрагменте размечались только найденные слова
+        String sql = "SELECT p.id, u.telegram_id, p.request_time, p.status, p.process_time, "
+                + "ts_headline('" + TEXT_SEARCH_CONFIG + "', "
+                + "replace(replace(replace(p.request_text, '&', '&amp;'), '<', '&lt;'), '>', '&gt;'), "
+                + "p.query, ?) "
+                + "FROM (SELECT r.id, r.user_id, r.request_time, r.status, r.process_time, r.request_text, q.query "
+                + "FROM request_logs r, websearch_to_tsquery('" + TEXT_SEARCH_CONFIG + "', ?) AS q(query) "
+                + "WHERE " + filter
+                + " ORDER BY r.request_time DESC, r.id DESC LIMIT ?) p "
+                + "JOIN users u ON u.id = p.user_id "
+                + "ORDER BY p.request_time DESC, p.id DESC";
+
+        List<RequestLogSearchHit> hits = searchTimer.record(() -> jdbcTemplate.query(sql,
+                (rs, rowNum) -> {
+                    int processTimeValue = rs.getInt(5);
+                    Integer processTime = rs.wasNull() ? null : processTimeValue;
+                    return new RequestLogSearchHit(
+                            rs.getLong(1),
+                            rs.getLong(2),
+                            rs.getTimestamp(3).toLocalDateTime(),
+                            rs.getString(4),
+                            processTime,
+                            rs.getString(6));
+                }, args.toArray()));
+
+        if (hits.size() <= limit) {
+            return new RequestLogSearchPage(hits, null, null);
+        }
+        List<RequestLogSearchHit> page = hits.subList(0, limit);
+        RequestLogSearchHit last = page.get(page.size() - 1);
+        return new RequestLogSearchPage(List.copyOf(page), last.requestTime(), last.id());
+    }
+}
@@ -3,15 +3,18 @@ package com.chatassist.cozetalk.service;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.chatassist.cozetalk.domain.CompressedText;
 import com.chatassist.cozetalk.domain.RequestLog;
 import com.chatassist.cozetalk.domain.User;
 import com.chatassist.cozetalk.repository.RequestLogRepository;
+import com.chatassist.cozetalk.util.RequestLogSegment;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,10 +25,23 @@ import lombok.extern.slf4j.Slf4j;
 public class RequestLogService {
 
     private final RequestLogRepository requestLogRepository;
+    private final RequestLogArchive requestLogArchive;
 
+    /**
+     * Последние записи журнала пользователя. Если в базе данных записей меньше лимита,
+     * недостающие более старые записи читаются из архива.
+     */
     @Transactional(readOnly = true)
     public List<RequestLog> getLogsByUser(User user, int limit) {
-        return requestLogRepository.findByUserOrderByRequestTimeDesc(user, PageRequest.of(0, limit));
+        List<RequestLog> logs = new ArrayList<>(
+                requestLogRepository.findByUserOrderByRequestTimeDesc(user, PageRequest.of(0, limit)));
+        if (logs.size() < limit) {
+            LocalDateTime before = logs.isEmpty() ? LocalDateTime.now() : logs.get(logs.size() - 1).getRequestTime();
+            for (RequestLogSegment.Row row : requestLogArchive.findByUser(user.getId(), before, limit - logs.size())) {
+                logs.add(toRequestLog(user, row));
+            }
+        }
+        return logs;
     }
 
     @Transactional(readOnly = true)
@@ -56,4 +72,17 @@ public class RequestLogService {
 
         return requestLogRepository.countRequestsInPeriod(dayAgo, now);
     }
+
+    // Архивная запись не связана с контекстом персистентности и не сохраняется
+    private RequestLog toRequestLog(User user, RequestLogSegment.Row row) {
+        RequestLog requestLog = new RequestLog();
+        requestLog.setId(row.id());
+        requestLog.setUser(user);
+        requestLog.setRequestTime(requestLogArchive.toLocalDateTime(row.requestTimeMillis()));
+        requestLog.setRequestText(row.requestText());
+        requestLog.setResponseText(CompressedText.of(row.responseText()));
+        requestLog.setStatus(row.status());
+        requestLog.setProcessTime(row.processTime());
+        return requestLog;
+    }
 }
\ No newline at end of file
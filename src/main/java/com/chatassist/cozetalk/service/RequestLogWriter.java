@@ -0,0 +1,361 @@
+package com.chatassist.cozetalk.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Отложенная пакетная запись журнала запросов.
+ * Создание записи и ее завершение ставятся в ограниченную неблокирующую очередь,
+ * которую отдельный поток сбрасывает пакетами по размеру или по времени.
+ * Несколько изменений одной записи в пакете объединяются в одну вставку,
+ * поэтому потоки Reactor Netty не выполняют блокирующих вызовов JDBC.
+ * Статистика использования учитывается здесь же, в {@link UsageStatisticsAggregator}.
+ * Текст ответа сжимается {@link ResponseTextCompressor} в потоке записи.
+ */
+@Component
+@Slf4j
+public class RequestLogWriter {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO request_logs (id, user_id, request_time, request_text, response_text_z, response_text, "
+                    + "status, process_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?) "
+                    + "ON CONFLICT (id, request_time) DO UPDATE SET response_text_z = EXCLUDED.response_text_z, "
+                    + "response_text = EXCLUDED.response_text, status = EXCLUDED.status, process_time = EXCLUDED.process_time";
+
+    // Последовательность с шагом ID_ALLOCATION_SIZE: каждое значение открывает диапазон (pooled-lo)
+    private static final String NEXT_ID_SQL = "SELECT nextval('request_logs_id_seq')";
+    private static final int ID_ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UsageStatisticsAggregator usageStatisticsAggregator;
+    private final ResponseTextCompressor responseTextCompressor;
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final int maxAttempts;
+
+    private long nextId;
+    private long maxId = -1;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizeSummary;
+    private final Counter droppedCounter;
+    private final Counter failedCounter;
+    private final Counter rejectedCounter;
+
+    public RequestLogWriter(JdbcTemplate jdbcTemplate,
+                            UsageStatisticsAggregator usageStatisticsAggregator,
+                            ResponseTextCompressor responseTextCompressor,
+                            MeterRegistry meterRegistry,
+                            @Value("${request-log.writer.capacity:10000}") int capacity,
+                            @Value("${request-log.writer.batch-size:100}") int batchSize,
+                            @Value("${request-log.writer.flush-interval-ms:200}") long flushIntervalMs,
+                            @Value("${request-log.writer.max-attempts:5}") int maxAttempts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.usageStatisticsAggregator = usageStatisticsAggregator;
+        this.responseTextCompressor = responseTextCompressor;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.maxAttempts = maxAttempts;
+
+        this.flushTimer = Timer.builder("request-log.writer.flush")
+                .description("Время записи пакета журнала запросов")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("request-log.writer.batch")
+                .description("Количество записей журнала запросов в пакете")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("request-log.writer.dropped")
+                .description("Записи журнала запросов, отброшенные из-за переполнения очереди")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("request-log.writer.failed")
+                .description("Записи журнала запросов, которые не удалось сохранить")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("request-log.writer.rejected")
+                .description("Записи журнала запросов, отклоненные базой данных из-за нарушения ограничений")
+                .register(meterRegistry);
+        Gauge.builder("request-log.writer.queued", queued, AtomicInteger::get)
+                .description("Количество изменений журнала запросов в очереди на запись")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::writeLoop, "request-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Создает запись журнала в статусе PROCESSING.
+     *
+     * @param userId ID пользователя в базе данных
+     * @param requestText Текст запроса
+     * @return Запись журнала для последующего завершения
+     */
+    public Entry start(Long userId, String requestText) {
+        Entry entry = new Entry(userId, LocalDateTime.now(), requestText);
+        usageStatisticsAggregator.recordRequest(userId);
+        enqueue(entry);
+        return entry;
+    }
+
+    /**
+     * Завершает запись журнала результатом обработки.
+     *
+     * @param entry Запись журнала
+     * @param responseText Текст ответа
+     * @param status Статус обработки
+     * @param processTime Время обработки в миллисекундах
+     */
+    public void complete(Entry entry, String responseText, String status, int processTime) {
+        entry.complete(responseText, status, processTime);
+        usageStatisticsAggregator.recordCompletion(status, processTime);
+        enqueue(entry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (queued.get() > 0) {
+            log.warn("При остановке не сохранено изменений журнала запросов: {}", queued.get());
+        }
+    }
+
+    private void enqueue(Entry entry) {
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            onOverflow(entry);
+            return;
+        }
+        queue.offer(entry);
+
+        if (queued.get() >= batchSize) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Очередь переполнена: поток, которому разрешено блокироваться, записывает изменение сам,
+     * а поток event loop отбрасывает его, чтобы не останавливать обработку ответов.
+     */
+    private void onOverflow(Entry entry) {
+        if (!Schedulers.isInNonBlockingThread()) {
+            writeDirect(entry);
+            return;
+        }
+        droppedCounter.increment();
+        log.warn("Очередь журнала запросов переполнена, запись пользователя {} отброшена", entry.userId);
+    }
+
+    private void writeLoop() {
+        boolean written = true;
+        while (running || queued.get() > 0) {
+            // После ошибки записи ждем полный интервал, даже если очередь заполнена
+            if (running && (queued.get() < batchSize || !written)) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            try {
+                written = drain();
+            } catch (Exception e) {
+                written = false;
+                log.error("Ошибка записи журнала запросов: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private boolean drain() {
+        while (queued.get() > 0) {
+            // Повторные изменения одной записи в пакете объединяются
+            Map<Entry, Boolean> batch = new IdentityHashMap<>();
+            Entry entry;
+            while (batch.size() < batchSize && (entry = queue.poll()) != null) {
+                queued.decrementAndGet();
+                batch.put(entry, Boolean.TRUE);
+            }
+            if (batch.isEmpty()) {
+                return true;
+            }
+
+            if (!writeBatch(new ArrayList<>(batch.keySet()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Записывает пакет. Если пакет отвергнут из-за данных, записи сохраняются по одной,
+     * чтобы одна некорректная запись (удаленный пользователь, отсутствующая секция)
+     * не блокировала остальные.
+     *
+     * @return false, если часть записей отложена из-за временной ошибки
+     */
+    private boolean writeBatch(List<Entry> entries) {
+        try {
+            write(entries);
+            return true;
+        } catch (RuntimeException e) {
+            if (isRetryable(e)) {
+                log.error("Не удалось сохранить {} записей журнала запросов: {}", entries.size(), e.getMessage(), e);
+                entries.forEach(entry -> retryLater(entry, e));
+                return false;
+            }
+        }
+
+        boolean written = true;
+        for (Entry entry : entries) {
+            try {
+                write(List.of(entry));
+            } catch (RuntimeException e) {
+                if (isRetryable(e)) {
+                    retryLater(entry, e);
+                    written = false;
+                } else {
+                    reject(entry, e);
+                }
+            }
+        }
+        return written;
+    }
+
+    // Нарушение ограничений не исправится повтором, в отличие от недоступности базы данных
+    private static boolean isRetryable(RuntimeException e) {
+        return e instanceof DataAccessException && !(e instanceof DataIntegrityViolationException);
+    }
+
+    private void retryLater(Entry entry, RuntimeException e) {
+        entry.attempts++;
+        if (!running || entry.attempts >= maxAttempts) {
+            failedCounter.increment();
+            log.error("Запись журнала запросов пользователя {} не сохранена после {} попыток: {}",
+                    entry.userId, entry.attempts, e.getMessage());
+            return;
+        }
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            droppedCounter.increment();
+            return;
+        }
+        queue.offer(entry);
+    }
+
+    private void reject(Entry entry, RuntimeException e) {
+        rejectedCounter.increment();
+        log.error("Запись журнала запросов пользователя {} отклонена базой данных: {}", entry.userId, e.getMessage());
+    }
+
+    /**
+     * Запись в обход очереди при ее переполнении, без повторных попыток.
+     */
+    private void writeDirect(Entry entry) {
+        try {
+            write(List.of(entry));
+        } catch (RuntimeException e) {
+            failedCounter.increment();
+            log.error("Не удалось сохранить запись журнала запросов пользователя {}: {}", entry.userId, e.getMessage(), e);
+        }
+    }
+
+    private void write(List<Entry> entries) {
+        List<Object[]> args = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            args.add(entry.toRow(this));
+        }
+        flushTimer.record(() -> jdbcTemplate.batchUpdate(UPSERT_SQL, args));
+        batchSizeSummary.record(entries.size());
+    }
+
+    private synchronized long nextId() {
+        if (nextId > maxId) {
+            Long low = jdbcTemplate.queryForObject(NEXT_ID_SQL, Long.class);
+            nextId = low;
+            maxId = low + ID_ALLOCATION_SIZE - 1;
+        }
+        return nextId++;
+    }
+
+    /**
+     * Запись журнала запросов. ID назначается при первой записи в базу данных,
+     * дальнейшие изменения той же записи сохраняются по этому ID.
+     */
+    public static final class Entry {
+        private final Long userId;
+        private final LocalDateTime requestTime;
+        private final String requestText;
+
+        private Long id;
+        private String responseText;
+        private byte[] compressedResponse;
+        private String status = "PROCESSING";
+        private Integer processTime;
+        // Неудачные попытки записи; изменяется только потоком записи
+        private int attempts;
+
+        private Entry(Long userId, LocalDateTime requestTime, String requestText) {
+            this.userId = userId;
+            this.requestTime = requestTime;
+            this.requestText = requestText;
+        }
+
+        private synchronized void complete(String responseText, String status, int processTime) {
+            this.responseText = responseText;
+            this.status = status;
+            this.processTime = processTime;
+        }
+
+        private synchronized Object[] toRow(RequestLogWriter writer) {
+            if (id == null) {
+                id = writer.nextId();
+            }
+            if (!writer.responseTextCompressor.isEnabled()) {
+                return new Object[]{id, userId, Timestamp.valueOf(requestTime), requestText,
+                        null, responseText, status, processTime};
+            }
+            // Ответ сжимается один раз, даже если пакет придется записывать повторно
+            if (responseText != null && compressedResponse == null) {
+                compressedResponse = writer.responseTextCompressor.compress(responseText);
+            }
+            return new Object[]{id, userId, Timestamp.valueOf(requestTime), requestText,
+                    compressedResponse, null, status, processTime};
+        }
+    }
+}
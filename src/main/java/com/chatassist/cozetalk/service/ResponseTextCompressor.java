@@ -0,0 +1,147 @@
+package com.chatassist.cozetalk.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.chatassist.cozetalk.util.CompressionDictionaryTrainer;
+import com.chatassist.cozetalk.util.DeflateTextCodec;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Сжатие ответов нейромодели для хранения в журнале запросов.
+ * Ответы похожи друг на друга, поэтому используется словарь, обученный на сохраненных ответах.
+ * Словари хранятся в compression_dictionaries и никогда не изменяются: каждая запись
+ * содержит ID своего словаря и распаковывается им после обучения нового.
+ */
+@Service
+@Slf4j
+public class ResponseTextCompressor {
+
+    private static final String SELECT_DICTIONARIES_SQL = "SELECT id, dictionary FROM compression_dictionaries";
+    private static final String SELECT_DICTIONARY_SQL = "SELECT dictionary FROM compression_dictionaries WHERE id = ?";
+    private static final String INSERT_DICTIONARY_SQL =
+            "INSERT INTO compression_dictionaries (id, dictionary) "
+                    + "SELECT COALESCE(MAX(id), 0) + 1, ? FROM compression_dictionaries RETURNING id";
+    private static final String SELECT_SAMPLES_SQL =
+            "SELECT response_text_z FROM request_logs WHERE response_text_z IS NOT NULL "
+                    + "AND request_time > NOW() - INTERVAL '7 days' ORDER BY request_time DESC LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int trainingSamples;
+    private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+    private volatile int currentDictionaryId = DeflateTextCodec.NO_DICTIONARY;
+
+    private final Counter originalBytes;
+    private final Counter storedBytes;
+
+    public ResponseTextCompressor(JdbcTemplate jdbcTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${request-log.compression.enabled:true}") boolean enabled,
+                                  @Value("${request-log.compression.training-samples:500}") int trainingSamples) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.trainingSamples = trainingSamples;
+
+        this.originalBytes = Counter.builder("request-log.compression.original.bytes")
+                .description("Размер ответов до сжатия")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.storedBytes = Counter.builder("request-log.compression.stored.bytes")
+                .description("Размер ответов после сжатия")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void loadDictionaries() {
+        jdbcTemplate.query(SELECT_DICTIONARIES_SQL, rs -> {
+            int id = rs.getInt(1);
+            dictionaries.put(id, rs.getBytes(2));
+            currentDictionaryId = Math.max(currentDictionaryId, id);
+        });
+        log.info("Загружено словарей сжатия ответов: {}, текущий: {}", dictionaries.size(), currentDictionaryId);
+    }
+
+    /**
+     * @return false, если новые ответы сохраняются без сжатия в столбец response_text
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public byte[] compress(String text) {
+        int dictionaryId = currentDictionaryId;
+        byte[] compressed = DeflateTextCodec.compress(text, dictionaryId, dictionaries.get(dictionaryId));
+
+        originalBytes.increment(text.getBytes(StandardCharsets.UTF_8).length);
+        storedBytes.increment(compressed.length);
+        return compressed;
+    }
+
+    public String decompress(byte[] data) {
+        return DeflateTextCodec.decompress(data, this::getDictionary);
+    }
+
+    /**
+     * Словарь мог быть обучен другим экземпляром приложения после запуска этого,
+     * поэтому отсутствующий в памяти словарь загружается из базы данных.
+     */
+    private byte[] getDictionary(int id) {
+        byte[] dictionary = dictionaries.get(id);
+        if (dictionary != null) {
+            return dictionary;
+        }
+        List<byte[]> found = jdbcTemplate.query(SELECT_DICTIONARY_SQL, (rs, rowNum) -> rs.getBytes(1), id);
+        if (found.isEmpty()) {
+            return null;
+        }
+        log.info("Загружен словарь сжатия ответов {}, обученный другим экземпляром", id);
+        // Словари не изменяются, поэтому параллельная загрузка дает тот же результат
+        dictionaries.putIfAbsent(id, found.get(0));
+        return found.get(0);
+    }
+
+    /**
+     * Обучает новый словарь на недавних ответах и использует его для новых записей.
+     *
+     * @return ID нового словаря или текущий ID, если образцов недостаточно
+     */
+    public synchronized int trainDictionary() {
+        List<String> samples = new ArrayList<>();
+        jdbcTemplate.query(SELECT_SAMPLES_SQL, rs -> {
+            samples.add(decompress(rs.getBytes(1)));
+        }, trainingSamples);
+
+        byte[] dictionary = CompressionDictionaryTrainer.train(samples, CompressionDictionaryTrainer.MAX_DICTIONARY_SIZE);
+        if (dictionary.length == 0) {
+            log.info("Недостаточно повторяющихся фраз для словаря сжатия ({} образцов)", samples.size());
+            return currentDictionaryId;
+        }
+
+        Integer id = jdbcTemplate.queryForObject(INSERT_DICTIONARY_SQL, Integer.class, (Object) dictionary);
+        dictionaries.put(id, dictionary);
+        currentDictionaryId = id;
+        log.info("Обучен словарь сжатия ответов {}: {} байт по {} образцам", id, dictionary.length, samples.size());
+        return id;
+    }
+
+    /**
+     * @return Доля сэкономленного места для ответов, сжатых с момента запуска (0..1)
+     */
+    public double getSavedRatio() {
+        double original = originalBytes.count();
+        return original > 0 ? 1 - storedBytes.count() / original : 0;
+    }
+}
@@ -0,0 +1,10 @@
+package com.chatassist.cozetalk.service;
+
+/**
+ * Событие изменения подписки пользователя.
+ * Обрабатывается после фиксации транзакции, в которой подписка была изменена.
+ *
+ * @param telegramId ID пользователя в Telegram
+ */
+public record SubscriptionChangedEvent(Long telegramId) {
+}
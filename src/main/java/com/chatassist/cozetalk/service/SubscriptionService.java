@@ -2,23 +2,26 @@ package com.chatassist.cozetalk.service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.chatassist.cozetalk.domain.Subscription;
 import com.chatassist.cozetalk.domain.User;
+import com.chatassist.cozetalk.domain.dto.SubscriptionSnapshot;
+import com.chatassist.cozetalk.domain.dto.UpdateContext;
 import com.chatassist.cozetalk.domain.enums.TariffPlan;
 import com.chatassist.cozetalk.repository.SubscriptionRepository;
 import com.chatassist.cozetalk.repository.UserRepository;
-import com.chatassist.cozetalk.repository.RequestLogRepository;
 
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Scheduler;
 
 @Service
 @RequiredArgsConstructor
@@ -27,44 +30,80 @@ public class SubscriptionService {
 
     private final SubscriptionRepository subscriptionRepository;
     private final UserRepository userRepository;
-    private final RequestLogRepository requestLogRepository;
-
-    @Transactional(readOnly = true)
-    public boolean canUserMakeRequest(Long telegramId) {
-        User user = userRepository.findByTelegramId(telegramId)
-                .orElseThrow(() -> new EntityNotFoundException("Пользователь не найден"));
-
-        Subscription subscription = user.getSubscription();
+    private final DailyQuotaService dailyQuotaService;
+    private final SubscriptionSnapshotCache subscriptionSnapshotCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Scheduler jdbcScheduler;
+
+    /**
+     * Возвращает снимок подписки пользователя из кэша.
+     *
+     * @param telegramId ID пользователя в Telegram
+     * @return Снимок подписки или пустой Optional, если пользователь не зарегистрирован
+     */
+    public Optional<SubscriptionSnapshot> getSnapshot(Long telegramId) {
+        return subscriptionSnapshotCache.get(telegramId);
+    }
 
-        // Проверка наличия активной подписки
-        if (subscription == null || subscription.getEndDate().isBefore(LocalDateTime.now())) {
-            return false;
+    /**
+     * Резервирует запрос пользователя: атомарно учитывает его в дневном лимите
+     * и списывает с остатка подписки. Одновременные запросы одного пользователя
+     * не могут превысить лимит.
+     *
+     * @param context Контекст обновления с подпиской пользователя
+     * @return Резерв или пустой Optional, если подписка неактивна или лимит исчерпан
+     */
+    public Optional<QuotaReservation> reserveRequest(UpdateContext context) {
+        if (!context.hasActiveSubscription()) {
+            return Optional.empty();
         }
 
-        // Проверка дневного лимита
-        int usedToday = getRequestsUsedToday(user);
-        return usedToday < subscription.getDailyLimit();
-    }
-
-    @Transactional(readOnly = true)
-    public int getRemainingRequests(Long telegramId) {
-        User user = userRepository.findByTelegramId(telegramId)
-                .orElseThrow(() -> new EntityNotFoundException("Пользователь не найден"));
+        Long telegramId = context.getTelegramId();
+        LocalDate day = dailyQuotaService.tryIncrement(telegramId, context.getSubscription().dailyLimit());
+        if (day == null) {
+            return Optional.empty();
+        }
 
-        Subscription subscription = user.getSubscription();
-        if (subscription == null) {
-            return 0;
+        if (!decrementRemainingRequests(telegramId)) {
+            dailyQuotaService.decrement(telegramId, day);
+            return Optional.empty();
         }
 
-        int usedToday = getRequestsUsedToday(user);
-        return Math.max(0, subscription.getDailyLimit() - usedToday);
+        return Optional.of(new QuotaReservation(telegramId, day, this));
     }
 
+    /**
+     * Атомарно списывает один запрос с остатка подписки.
+     *
+     * @param telegramId ID пользователя в Telegram
+     * @return true, если запрос списан
+     */
     @Transactional
-    public void decrementRemainingRequests(Long telegramId) {
-        // Для статистики мы не уменьшаем счетчик напрямую,
-        // вместо этого логируем запрос в RequestLog
-        // и при следующей проверке будет учтено актуальное количество запросов
+    public boolean decrementRemainingRequests(Long telegramId) {
+        return subscriptionRepository.decrementRemainingRequests(telegramId) > 0;
+    }
+
+    /**
+     * Возвращает зарезервированный запрос в дневной лимит и остаток подписки.
+     * Вызывается и из потоков Reactor Netty, поэтому возврат целиком выполняется на пуле JDBC:
+     * и обновление в базе данных, и счетчик, который при смене дня сохраняет прошедший день.
+     *
+     * @param telegramId ID пользователя в Telegram
+     * @param day День, в котором запрос учтен в дневном лимите
+     */
+    public void refundRequest(Long telegramId, LocalDate day) {
+        try {
+            jdbcScheduler.schedule(() -> {
+                try {
+                    dailyQuotaService.decrement(telegramId, day);
+                    subscriptionRepository.incrementRemainingRequests(telegramId);
+                } catch (Exception e) {
+                    log.error("Не удалось вернуть запрос пользователю {}: {}", telegramId, e.getMessage(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.error("Не удалось вернуть запрос пользователю {}: пул JDBC перегружен", telegramId);
+        }
     }
 
     @Transactional
@@ -90,9 +129,11 @@ public class SubscriptionService {
 
         subscription.setTariffPlan(tariffPlan);
         subscription.setDailyLimit(tariffPlan.getDailyLimit());
-        subscription.setRemainingRequests(30 * tariffPlan.getDailyLimit()); // Примерно на месяц
+        // Примерно на месяц; для безлимитного тарифа без переполнения
+        subscription.setRemainingRequests((int) Math.min(Integer.MAX_VALUE, 30L * tariffPlan.getDailyLimit()));
 
         subscriptionRepository.save(subscription);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(telegramId));
         log.info("Активирована подписка {} для пользователя с ID {}", tariffPlan, telegramId);
     }
 
@@ -111,11 +152,8 @@ public class SubscriptionService {
         return subscriptionRepository.countActiveSubscriptions(LocalDateTime.now());
     }
 
-    @Transactional(readOnly = true)
-    public int getRequestsUsedToday(User user) {
-        LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
-        LocalDateTime endOfDay = LocalDate.now().atTime(LocalTime.MAX);
-
-        return requestLogRepository.countRequestsForUserToday(user, startOfDay, endOfDay);
+    public int getRequestsUsedToday(Long telegramId) {
+        // Счетчик в памяти вместо COUNT по request_logs
+        return dailyQuotaService.getUsedToday(telegramId);
     }
 }
\ No newline at end of file
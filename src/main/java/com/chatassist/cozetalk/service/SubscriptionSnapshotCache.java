@@ -0,0 +1,67 @@
+package com.chatassist.cozetalk.service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.chatassist.cozetalk.domain.dto.SubscriptionSnapshot;
+import com.chatassist.cozetalk.repository.SubscriptionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Кэш снимков подписок по Telegram ID.
+ * При попадании проверка подписки не требует ни запроса к базе данных, ни сессии Hibernate.
+ * Запись удаляется по {@link SubscriptionChangedEvent} после фиксации транзакции,
+ * изменившей подписку; TTL ограничивает устаревание при изменениях в обход сервисов.
+ */
+@Component
+@Slf4j
+public class SubscriptionSnapshotCache {
+
+    private final SubscriptionRepository subscriptionRepository;
+    private final Cache<Long, SubscriptionSnapshot> cache;
+
+    public SubscriptionSnapshotCache(SubscriptionRepository subscriptionRepository,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${subscription.cache.max-size:100000}") long maxSize,
+                                     @Value("${subscription.cache.ttl-minutes:10}") long ttlMinutes) {
+        this.subscriptionRepository = subscriptionRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "subscription.snapshots");
+    }
+
+    /**
+     * Возвращает снимок подписки пользователя, загружая его из базы данных при промахе.
+     * Для пользователя без подписки возвращается снимок без тарифа.
+     *
+     * @param telegramId ID пользователя в Telegram
+     * @return Снимок подписки или пустой Optional, если пользователь не зарегистрирован
+     */
+    public Optional<SubscriptionSnapshot> get(Long telegramId) {
+        // Незарегистрированные пользователи не кэшируются: загрузчик возвращает null
+        return Optional.ofNullable(cache.get(telegramId, this::load));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSubscriptionChanged(SubscriptionChangedEvent event) {
+        cache.invalidate(event.telegramId());
+        log.debug("Снимок подписки пользователя {} удален из кэша", event.telegramId());
+    }
+
+    private SubscriptionSnapshot load(Long telegramId) {
+        return subscriptionRepository.findSnapshotByTelegramId(telegramId).orElse(null);
+    }
+}
@@ -0,0 +1,202 @@
+package com.chatassist.cozetalk.service;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.chatassist.cozetalk.util.HyperLogLog;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Дневная статистика использования, накапливаемая в приложении.
+ * Заменяет триггер на request_logs: уникальные пользователи оцениваются HyperLogLog,
+ * среднее время обработки и количество ошибок считаются по накопленным суммам.
+ * Значения периодически сохраняются в usage_statistics целиком, поэтому повторное
+ * сохранение не искажает статистику.
+ * <p>
+ * Статистику пишет только один экземпляр приложения: каждый экземпляр видит лишь свои запросы
+ * и перезаписывал бы итоги другого. Это то же ограничение, что и у long polling (Telegram
+ * отдает обновления одному получателю) и у счетчиков {@link DailyQuotaService} в памяти.
+ * Для нескольких экземпляров итоги нужно хранить по экземплярам и суммировать при чтении
+ * (уникальных пользователей - объединением регистров HyperLogLog).
+ */
+@Service
+@Slf4j
+public class UsageStatisticsAggregator {
+
+    private static final String STATUS_ERROR = "ERROR";
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO usage_statistics (date, total_requests, unique_users, avg_process_time, error_count) "
+                    + "VALUES (?, ?, ?, ?, ?) "
+                    + "ON CONFLICT (date) DO UPDATE SET total_requests = EXCLUDED.total_requests, "
+                    + "unique_users = EXCLUDED.unique_users, avg_process_time = EXCLUDED.avg_process_time, "
+                    + "error_count = EXCLUDED.error_count";
+
+    private static final String SELECT_USERS_SQL =
+            "SELECT DISTINCT user_id FROM request_logs WHERE request_time >= ?";
+
+    private static final String SELECT_TOTALS_SQL =
+            "SELECT COUNT(*), COUNT(CASE WHEN status = 'ERROR' THEN 1 END), "
+                    + "COALESCE(SUM(process_time), 0), COUNT(process_time) "
+                    + "FROM request_logs WHERE request_time >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ZoneId zoneId = ZoneId.systemDefault();
+    private final int precision;
+    private final Timer flushTimer;
+
+    private volatile DayStatistics current;
+    // Статистика прошедшего дня, которую осталось сохранить после смены дня
+    private DayStatistics finished;
+
+    public UsageStatisticsAggregator(JdbcTemplate jdbcTemplate,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${usage.statistics.hll-precision:14}") int precision) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.precision = precision;
+        this.current = new DayStatistics(LocalDate.now(zoneId));
+
+        this.flushTimer = Timer.builder("usage.statistics.flush")
+                .description("Время сохранения дневной статистики использования")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Восстанавливает статистику текущего дня по журналу запросов.
+     */
+    @PostConstruct
+    public void rebuild() {
+        DayStatistics statistics = new DayStatistics(LocalDate.now(zoneId));
+        Timestamp dayStart = Timestamp.valueOf(statistics.day.atStartOfDay());
+
+        jdbcTemplate.query(SELECT_USERS_SQL, rs -> {
+            statistics.users.add(rs.getLong(1));
+        }, dayStart);
+        jdbcTemplate.query(SELECT_TOTALS_SQL, rs -> {
+            statistics.totalRequests.add(rs.getLong(1));
+            statistics.errorCount.add(rs.getLong(2));
+            statistics.processTimeSum.add(rs.getLong(3));
+            statistics.processTimeCount.add(rs.getLong(4));
+        }, dayStart);
+
+        current = statistics;
+        log.info("Восстановлена статистика использования за {}: запросов {}",
+                statistics.day, statistics.totalRequests.sum());
+    }
+
+    /**
+     * Учитывает новый запрос пользователя.
+     *
+     * @param userId ID пользователя в базе данных
+     */
+    public void recordRequest(Long userId) {
+        DayStatistics statistics = currentDay();
+        statistics.totalRequests.increment();
+        statistics.users.add(userId);
+    }
+
+    /**
+     * Учитывает результат обработки запроса.
+     *
+     * @param status Статус обработки
+     * @param processTime Время обработки в миллисекундах
+     */
+    public void recordCompletion(String status, int processTime) {
+        DayStatistics statistics = currentDay();
+        statistics.processTimeSum.add(processTime);
+        statistics.processTimeCount.increment();
+        if (STATUS_ERROR.equals(status)) {
+            statistics.errorCount.increment();
+        }
+    }
+
+    /**
+     * Сохраняет статистику в usage_statistics.
+     */
+    @Scheduled(fixedDelayString = "${usage.statistics.flush-interval-ms:60000}")
+    public void flush() {
+        DayStatistics previous;
+        synchronized (this) {
+            previous = finished;
+            finished = null;
+        }
+        try {
+            if (previous != null) {
+                save(previous);
+            }
+            save(current);
+        } catch (Exception e) {
+            log.error("Ошибка сохранения статистики использования: {}", e.getMessage(), e);
+            if (previous != null) {
+                synchronized (this) {
+                    if (finished == null) {
+                        finished = previous;
+                    }
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void save(DayStatistics statistics) {
+        long processTimeCount = statistics.processTimeCount.sum();
+        Integer avgProcessTime = processTimeCount > 0
+                ? (int) Math.round((double) statistics.processTimeSum.sum() / processTimeCount)
+                : null;
+
+        flushTimer.record(() -> jdbcTemplate.update(UPSERT_SQL,
+                Date.valueOf(statistics.day),
+                (int) statistics.totalRequests.sum(),
+                (int) statistics.users.estimate(),
+                avgProcessTime,
+                (int) statistics.errorCount.sum()));
+    }
+
+    private DayStatistics currentDay() {
+        DayStatistics statistics = current;
+        if (System.currentTimeMillis() < statistics.nextDayStartMillis) {
+            return statistics;
+        }
+        synchronized (this) {
+            LocalDate today = LocalDate.now(zoneId);
+            if (!current.day.equals(today)) {
+                // Итог прошедшего дня сохранится при следующем сбросе, без JDBC в вызывающем потоке
+                finished = current;
+                current = new DayStatistics(today);
+            }
+            return current;
+        }
+    }
+
+    private final class DayStatistics {
+        private final LocalDate day;
+        private final long nextDayStartMillis;
+        private final HyperLogLog users = new HyperLogLog(precision);
+        private final LongAdder totalRequests = new LongAdder();
+        private final LongAdder errorCount = new LongAdder();
+        private final LongAdder processTimeSum = new LongAdder();
+        private final LongAdder processTimeCount = new LongAdder();
+
+        private DayStatistics(LocalDate day) {
+            this.day = day;
+            this.nextDayStartMillis = day.plusDays(1).atStartOfDay(zoneId).toInstant().toEpochMilli();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.chatassist.cozetalk.service;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 // Не импортируем классы с одинаковыми именами, будем использовать полные имена
@@ -22,6 +23,8 @@ import lombok.extern.slf4j.Slf4j;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final KnownUserIndex knownUserIndex;
 
     /**
      * Поиск пользователя по Telegram ID.
@@ -56,15 +59,25 @@ public class UserService {
 
     /**
      * Регистрация нового пользователя, если он не существует.
-     * Если пользователь уже существует, возвращает существующего пользователя.
+     * Для уже известного пользователя обращения к базе данных не выполняется.
      *
      * @param telegramUser Объект пользователя из Telegram API
-     * @return Созданный или существующий объект пользователя
+     * @return true, если пользователь был создан
      */
-    @Transactional
-    public User registerUserIfNotExists(org.telegram.telegrambots.meta.api.objects.User telegramUser) {
-        return findByTelegramId(telegramUser.getId())
-                .orElseGet(() -> createUser(telegramUser));
+    public boolean registerUserIfNotExists(org.telegram.telegrambots.meta.api.objects.User telegramUser) {
+        Long telegramId = telegramUser.getId();
+        if (knownUserIndex.contains(telegramId)) {
+            return false;
+        }
+
+        boolean created = userRepository.insertIfNotExists(telegramId, telegramUser.getUserName(),
+                telegramUser.getFirstName(), telegramUser.getLastName()) > 0;
+        knownUserIndex.add(telegramId);
+
+        if (created) {
+            log.info("Создан новый пользователь с Telegram ID: {}", telegramId);
+        }
+        return created;
     }
 
     /**
@@ -106,6 +119,8 @@ public class UserService {
     public void deleteUserByTelegramId(Long telegramId) {
         userRepository.findByTelegramId(telegramId).ifPresent(user -> {
             userRepository.delete(user);
+            knownUserIndex.remove(telegramId);
+            eventPublisher.publishEvent(new SubscriptionChangedEvent(telegramId));
             log.info("Удален пользователь с Telegram ID: {}", telegramId);
         });
     }
@@ -0,0 +1,84 @@
+package com.chatassist.cozetalk.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Построение словаря Deflate по образцам текстов.
+ * В словарь попадают фразы из нескольких слов, которые чаще всего повторяются в разных образцах.
+ * Самые полезные фразы располагаются в конце словаря: Deflate кодирует близкие
+ * ссылки короче дальних.
+ */
+public final class CompressionDictionaryTrainer {
+
+    /** Deflate использует не более 32 КБ словаря */
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    private static final int MIN_PHRASE_WORDS = 2;
+    private static final int MAX_PHRASE_WORDS = 6;
+    private static final int MIN_OCCURRENCES = 3;
+
+    private CompressionDictionaryTrainer() {
+    }
+
+    /**
+     * @param samples Образцы текстов
+     * @param maxSize Максимальный размер словаря в байтах
+     * @return Словарь или пустой массив, если повторяющихся фраз нет
+     */
+    public static byte[] train(List<String> samples, int maxSize) {
+        int limit = Math.min(maxSize, MAX_DICTIONARY_SIZE);
+
+        // Фраза учитывается один раз на образец, чтобы один длинный текст не определял словарь
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (String sample : samples) {
+            String[] words = sample.split("\\s+");
+            Map<String, Boolean> seen = new HashMap<>();
+            for (int start = 0; start < words.length; start++) {
+                StringBuilder phrase = new StringBuilder(words[start]);
+                for (int end = start + 1; end < Math.min(words.length, start + MAX_PHRASE_WORDS); end++) {
+                    phrase.append(' ').append(words[end]);
+                    if (end - start + 1 >= MIN_PHRASE_WORDS) {
+                        String key = phrase.toString();
+                        if (seen.put(key, Boolean.TRUE) == null) {
+                            occurrences.merge(key, 1, Integer::sum);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Польза фразы: сколько байт она может заменить во всех образцах
+        List<Map.Entry<String, Integer>> phrases = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : occurrences.entrySet()) {
+            if (entry.getValue() >= MIN_OCCURRENCES) {
+                phrases.add(entry);
+            }
+        }
+        phrases.sort(Comparator.comparingLong(
+                (Map.Entry<String, Integer> entry) -> (long) entry.getValue() * entry.getKey().length()).reversed());
+
+        List<byte[]> selected = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> phrase : phrases) {
+            byte[] bytes = (phrase.getKey() + ' ').getBytes(StandardCharsets.UTF_8);
+            if (size + bytes.length > limit) {
+                continue;
+            }
+            selected.add(bytes);
+            size += bytes.length;
+        }
+
+        // Самые полезные фразы - в конце словаря
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(size);
+        for (int i = selected.size() - 1; i >= 0; i--) {
+            dictionary.writeBytes(selected.get(i));
+        }
+        return dictionary.toByteArray();
+    }
+}
@@ -0,0 +1,237 @@
+package com.chatassist.cozetalk.util;
+
+import java.util.Arrays;
+
+/**
+ * Потокобезопасное отображение примитивных long в int на открытой адресации.
+ * Ключи распределены по сегментам с отдельными блокировками, поэтому операции
+ * над разными ключами почти не конкурируют. Отсутствующему ключу соответствует значение 0.
+ */
+public class ConcurrentLongIntMap {
+
+    /**
+     * Обработчик пары ключ-значение.
+     */
+    @FunctionalInterface
+    public interface LongIntConsumer {
+        void accept(long key, int value);
+    }
+
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    /**
+     * @param expectedSize Ожидаемое количество ключей
+     * @param concurrency Ожидаемое количество одновременно работающих потоков
+     */
+    public ConcurrentLongIntMap(int expectedSize, int concurrency) {
+        int segmentCount = Integer.highestOneBit(Math.max(1, concurrency) * 2 - 1);
+        this.segments = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(Math.max(4, expectedSize / segmentCount));
+        }
+    }
+
+    public int get(long key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    public void put(long key, int value) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    /**
+     * Атомарно прибавляет delta к значению ключа.
+     *
+     * @return Новое значение
+     */
+    public int addAndGet(long key, int delta) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            int value = segment.get(key) + delta;
+            segment.put(key, value);
+            return value;
+        }
+    }
+
+    /**
+     * Атомарно увеличивает значение ключа на 1, если оно меньше limit.
+     *
+     * @return Новое значение или -1, если значение уже достигло limit
+     */
+    public int incrementIfLessThan(long key, int limit) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            int value = segment.get(key);
+            if (value >= limit) {
+                return -1;
+            }
+            segment.put(key, value + 1);
+            return value + 1;
+        }
+    }
+
+    /**
+     * Атомарно уменьшает значение ключа на 1, если оно больше 0.
+     *
+     * @return Новое значение
+     */
+    public int decrementIfPositive(long key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            int value = segment.get(key);
+            if (value > 0) {
+                segment.put(key, --value);
+            }
+            return value;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Обходит все пары. Каждый сегмент обходится под своей блокировкой,
+     * поэтому обработчик не должен обращаться к этому же отображению.
+     */
+    public void forEach(LongIntConsumer action) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.forEach(action);
+            }
+        }
+    }
+
+    private Segment segmentFor(long key) {
+        return segments[(int) (mix(key) >>> 32) & segmentMask];
+    }
+
+    private static long mix(long key) {
+        // Перемешивание битов (финализатор MurmurHash3), чтобы последовательные ID не шли подряд
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Segment {
+        private long[] keys;
+        private int[] values;
+        private int mask;
+        private int size;
+        private boolean containsEmptyKey;
+        private int emptyKeyValue;
+
+        private Segment(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+            this.keys = new long[capacity];
+            this.values = new int[capacity];
+            this.mask = capacity - 1;
+        }
+
+        private int get(long key) {
+            if (key == EMPTY) {
+                return containsEmptyKey ? emptyKeyValue : 0;
+            }
+            int index = indexFor(key);
+            while (keys[index] != EMPTY) {
+                if (keys[index] == key) {
+                    return values[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return 0;
+        }
+
+        private void put(long key, int value) {
+            if (key == EMPTY) {
+                if (!containsEmptyKey) {
+                    containsEmptyKey = true;
+                    size++;
+                }
+                emptyKeyValue = value;
+                return;
+            }
+            int index = indexFor(key);
+            while (keys[index] != EMPTY) {
+                if (keys[index] == key) {
+                    values[index] = value;
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            values[index] = value;
+            if (++size > keys.length * LOAD_FACTOR) {
+                rehash(keys.length << 1);
+            }
+        }
+
+        private void clear() {
+            Arrays.fill(keys, EMPTY);
+            Arrays.fill(values, 0);
+            containsEmptyKey = false;
+            emptyKeyValue = 0;
+            size = 0;
+        }
+
+        private void forEach(LongIntConsumer action) {
+            if (containsEmptyKey) {
+                action.accept(EMPTY, emptyKeyValue);
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    action.accept(keys[i], values[i]);
+                }
+            }
+        }
+
+        private int indexFor(long key) {
+            return (int) mix(key) & mask;
+        }
+
+        private void rehash(int newCapacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[newCapacity];
+            values = new int[newCapacity];
+            mask = newCapacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int index = indexFor(oldKeys[i]);
+                    while (keys[index] != EMPTY) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+    }
+}
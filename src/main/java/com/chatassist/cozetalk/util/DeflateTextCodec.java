@@ -0,0 +1,122 @@
+package com.chatassist.cozetalk.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntFunction;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие текста алгоритмом Deflate с необязательным предустановленным словарем.
+ * Формат: байт формата, два байта ID словаря (0 - без словаря), затем данные.
+ * Если сжатие не уменьшает размер, текст сохраняется как есть в UTF-8.
+ */
+public final class DeflateTextCodec {
+
+    public static final int NO_DICTIONARY = 0;
+
+    private static final byte FORMAT_RAW = 0;
+    private static final byte FORMAT_DEFLATE = 1;
+    private static final int HEADER_SIZE = 3;
+
+    private DeflateTextCodec() {
+    }
+
+    /**
+     * @param text Текст
+     * @param dictionaryId ID словаря или {@link #NO_DICTIONARY}
+     * @param dictionary Словарь (null без словаря)
+     * @return Сжатые данные
+     */
+    public static byte[] compress(String text, int dictionaryId, byte[] dictionary) {
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(raw);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + HEADER_SIZE);
+            out.write(FORMAT_DEFLATE);
+            out.write(dictionaryId >>> 8);
+            out.write(dictionaryId);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            if (out.size() < raw.length + HEADER_SIZE) {
+                return out.toByteArray();
+            }
+        } finally {
+            deflater.end();
+        }
+        return raw(raw);
+    }
+
+    /**
+     * Сохраняет текст без сжатия в том же формате.
+     */
+    public static byte[] raw(String text) {
+        return raw(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param data Сжатые данные
+     * @param dictionaries Поиск словаря по ID
+     * @return Исходный текст
+     * @throws IllegalArgumentException если данные повреждены или обрезаны
+     */
+    public static String decompress(byte[] data, IntFunction<byte[]> dictionaries) {
+        if (data.length < HEADER_SIZE) {
+            throw new IllegalArgumentException("Сжатые данные короче заголовка: " + data.length + " байт");
+        }
+        if (data[0] == FORMAT_RAW) {
+            return new String(data, HEADER_SIZE, data.length - HEADER_SIZE, StandardCharsets.UTF_8);
+        }
+        if (data[0] != FORMAT_DEFLATE) {
+            throw new IllegalArgumentException("Неизвестный формат сжатого текста: " + data[0]);
+        }
+
+        int dictionaryId = ((data[1] & 0xFF) << 8) | (data[2] & 0xFF);
+        Inflater inflater = new Inflater(true);
+        try {
+            if (dictionaryId != NO_DICTIONARY) {
+                byte[] dictionary = dictionaries.apply(dictionaryId);
+                if (dictionary == null) {
+                    throw new IllegalStateException("Словарь сжатия не найден: " + dictionaryId);
+                }
+                // Для потока без заголовка zlib словарь задается до начала распаковки
+                inflater.setDictionary(dictionary);
+            }
+            inflater.setInput(data, HEADER_SIZE, data.length - HEADER_SIZE);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    // Поток закончился раньше конца блока Deflate
+                    throw new IllegalArgumentException("Сжатые данные обрезаны");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Поврежденные сжатые данные: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] raw(byte[] raw) {
+        byte[] data = new byte[raw.length + HEADER_SIZE];
+        data[0] = FORMAT_RAW;
+        System.arraycopy(raw, 0, data, HEADER_SIZE, raw.length);
+        return data;
+    }
+}
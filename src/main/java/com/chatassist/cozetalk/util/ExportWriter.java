@@ -0,0 +1,167 @@
+package com.chatassist.cozetalk.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.chatassist.cozetalk.domain.enums.ExportFormat;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Построчная запись выгрузки в CSV или NDJSON.
+ * Строки сразу пишутся в поток через буфер фиксированного размера,
+ * поэтому расход памяти не зависит от объема выгрузки.
+ * Поток вывода закрывается вместе с выгрузкой.
+ */
+public abstract class ExportWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    protected final List<String> columns;
+
+    protected ExportWriter(List<String> columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * @param format Формат выгрузки
+     * @param out Поток вывода
+     * @param columns Названия столбцов в порядке значений строки
+     */
+    public static ExportWriter create(ExportFormat format, OutputStream out, List<String> columns) throws IOException {
+        return switch (format) {
+            case CSV -> new Csv(out, columns);
+            case NDJSON -> new Ndjson(out, columns);
+        };
+    }
+
+    /**
+     * @param values Значения строки в порядке столбцов
+     */
+    public abstract void writeRow(Object[] values) throws IOException;
+
+    protected static String format(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Enum<?> enumValue) {
+            return enumValue.name();
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal.toPlainString();
+        }
+        // Даты и время - в ISO-8601, остальные значения (в том числе сжатый текст) - через toString
+        return value.toString();
+    }
+
+    private static final class Csv extends ExportWriter {
+
+        private final Writer writer;
+
+        private Csv(OutputStream out, List<String> columns) throws IOException {
+            super(columns);
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            writeLine(columns.toArray());
+        }
+
+        @Override
+        public void writeRow(Object[] values) throws IOException {
+            writeLine(values);
+        }
+
+        private void writeLine(Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                String value = format(values[i]);
+                if (value != null) {
+                    writeEscaped(values[i] instanceof Number ? value : neutralizeFormula(value));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        // Текст пользователя, начинающийся с =, +, -, @, табуляции или CR, табличные редакторы
+        // выполняют как формулу; апостроф в начале заставляет показать его как текст
+        private static String neutralizeFormula(String value) {
+            if (value.isEmpty()) {
+                return value;
+            }
+            char first = value.charAt(0);
+            if (first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r') {
+                return "'" + value;
+            }
+            return value;
+        }
+
+        // RFC 4180: значения с разделителями, кавычками и переводами строк заключаются в кавычки
+        private void writeEscaped(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static final class Ndjson extends ExportWriter {
+
+        private final JsonGenerator generator;
+
+        private Ndjson(OutputStream out, List<String> columns) throws IOException {
+            super(columns);
+            this.generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+            // Объекты разделяются только переводом строки
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void writeRow(Object[] values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                generator.writeFieldName(columns.get(i));
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof Long number) {
+                    generator.writeNumber(number);
+                } else if (value instanceof Integer number) {
+                    generator.writeNumber(number);
+                } else if (value instanceof BigDecimal decimal) {
+                    generator.writeNumber(decimal);
+                } else {
+                    generator.writeString(format(value));
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+}
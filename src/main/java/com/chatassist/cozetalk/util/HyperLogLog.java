@@ -0,0 +1,66 @@
+package com.chatassist.cozetalk.util;
+
+/**
+ * Оценка количества различных значений long (HyperLogLog).
+ * Занимает 2^precision байт независимо от количества значений; стандартная ошибка
+ * около 1.04 / sqrt(2^precision). Для малых количеств используется оценка линейным подсчетом
+ * по доле пустых регистров: она тоже приближенная, но на малых количествах ошибается меньше.
+ */
+public class HyperLogLog {
+
+    private final int precision;
+    private final int registerCount;
+    private final byte[] registers;
+
+    /**
+     * @param precision Количество бит хэша для выбора регистра (4..18)
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("Точность HyperLogLog должна быть от 4 до 18: " + precision);
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+        this.registers = new byte[registerCount];
+    }
+
+    public synchronized void add(long value) {
+        long hash = mix(value);
+        int index = (int) (hash >>> (64 - precision));
+        // Позиция первой единицы в оставшихся битах; ограничитель не дает выйти за их пределы
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public synchronized long estimate() {
+        double sum = 0;
+        int zeroRegisters = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeroRegisters++;
+            }
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / registerCount);
+        double estimate = alpha * registerCount * registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeroRegisters > 0) {
+            // Оценка линейным подсчетом по пустым регистрам, на малых количествах она смещена меньше
+            estimate = registerCount * Math.log((double) registerCount / zeroRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    private static long mix(long value) {
+        // Финализатор MurmurHash3: последовательные ID дают равномерно распределенные хэши
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
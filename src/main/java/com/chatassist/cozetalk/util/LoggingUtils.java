@@ -9,10 +9,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import com.chatassist.cozetalk.domain.CompressedText;
 import com.chatassist.cozetalk.domain.RequestLog;
 import com.chatassist.cozetalk.domain.User;
 import com.chatassist.cozetalk.repository.RequestLogRepository;
 import com.chatassist.cozetalk.repository.UserRepository;
+import com.chatassist.cozetalk.service.ResponseTextCompressor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.RequiredArgsConstructor;
@@ -33,6 +35,7 @@ public class LoggingUtils {
     private final RequestLogRepository requestLogRepository;
     private final UserRepository userRepository;
     private final ObjectMapper objectMapper;
+    private final ResponseTextCompressor responseTextCompressor;
 
     /**
      * Логирует входящее обновление от Telegram.
@@ -109,7 +112,11 @@ public class LoggingUtils {
             return null;
         }
 
-        requestLog.setResponseText(responseText);
+        if (responseTextCompressor.isEnabled()) {
+            requestLog.setResponseText(CompressedText.of(responseText));
+        } else {
+            requestLog.setPlainResponseText(responseText);
+        }
         requestLog.setStatus(status);
         requestLog.setProcessTime(processTimeMillis);
 
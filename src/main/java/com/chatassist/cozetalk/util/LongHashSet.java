@@ -0,0 +1,159 @@
+package com.chatassist.cozetalk.util;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Компактное множество примитивных long на открытой адресации с линейным пробированием.
+ * Не создает объектов на каждую операцию и не является потокобезопасным -
+ * синхронизация остается на стороне вызывающего кода.
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+    private boolean containsEmptyKey;
+
+    /**
+     * Создает множество, рассчитанное на указанное количество элементов без перестроения.
+     *
+     * @param expectedSize Ожидаемое количество элементов
+     */
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        this.keys = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public boolean contains(long key) {
+        if (key == EMPTY) {
+            return containsEmptyKey;
+        }
+        int index = indexFor(key);
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Добавляет элемент в множество.
+     *
+     * @param key Значение
+     * @return true, если элемента еще не было в множестве
+     */
+    public boolean add(long key) {
+        if (key == EMPTY) {
+            boolean added = !containsEmptyKey;
+            containsEmptyKey = true;
+            if (added) {
+                size++;
+            }
+            return added;
+        }
+        int index = indexFor(key);
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Удаляет элемент со сдвигом последующих элементов цепочки,
+     * поэтому множество не накапливает "надгробий".
+     *
+     * @param key Значение
+     * @return true, если элемент был удален
+     */
+    public boolean remove(long key) {
+        if (key == EMPTY) {
+            boolean removed = containsEmptyKey;
+            containsEmptyKey = false;
+            if (removed) {
+                size--;
+            }
+            return removed;
+        }
+        int index = indexFor(key);
+        while (keys[index] != key) {
+            if (keys[index] == EMPTY) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = indexFor(keys[next]);
+            // Элемент можно сдвинуть в "дыру", если его исходная позиция не лежит между дырой и ним
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        containsEmptyKey = false;
+        size = 0;
+    }
+
+    public void forEach(LongConsumer action) {
+        if (containsEmptyKey) {
+            action.accept(EMPTY);
+        }
+        for (long key : keys) {
+            if (key != EMPTY) {
+                action.accept(key);
+            }
+        }
+    }
+
+    private int indexFor(long key) {
+        // Перемешивание битов (финализатор MurmurHash3), чтобы последовательные ID не шли подряд
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        keys = new long[newCapacity];
+        mask = newCapacity - 1;
+        for (long key : oldKeys) {
+            if (key != EMPTY) {
+                int index = indexFor(key);
+                while (keys[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+            }
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.chatassist.cozetalk.util;
 
+import java.io.Serializable;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.ParseMode;
 import org.telegram.telegrambots.meta.api.methods.send.SendAnimation;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
@@ -18,8 +21,13 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMa
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboard;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import com.chatassist.cozetalk.bot.sender.OutboundMessageScheduler;
+import com.chatassist.cozetalk.bot.sender.OutboundMessageScheduler.Priority;
+
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
  * Утилитный класс для работы с сообщениями в Telegram.
@@ -31,11 +39,15 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class MessageUtils {
 
-    private final TelegramLongPollingBot bot;
+    private final OutboundMessageScheduler outboundMessageScheduler;
 
     // Максимальная длина сообщения в Telegram (4096 символов)
     private static final int MAX_MESSAGE_LENGTH = 4096;
 
+    // Минимальный интервал между редактированиями сообщения при потоковой выдаче
+    @Value("${coze.api.streaming.edit-interval-ms:1500}")
+    private long streamEditIntervalMs;
+
     /**
      * Отправляет текстовое сообщение пользователю.
      *
@@ -75,7 +87,7 @@ public class MessageUtils {
         }
 
         try {
-            return bot.execute(message);
+            return await(outboundMessageScheduler.execute(chatId, message, Priority.NORMAL));
         } catch (TelegramApiException e) {
             log.error("Error sending message to chat {}: {}", chatId, e.getMessage(), e);
             return null;
@@ -105,7 +117,7 @@ public class MessageUtils {
             }
 
             try {
-                lastMessage = bot.execute(message);
+                lastMessage = await(outboundMessageScheduler.execute(chatId, message, Priority.NORMAL));
             } catch (TelegramApiException e) {
                 log.error("Error sending part {} of long message to chat {}: {}",
                         i + 1, chatId, e.getMessage(), e);
@@ -126,17 +138,7 @@ public class MessageUtils {
 
         int startIndex = 0;
         while (startIndex < text.length()) {
-            int endIndex = Math.min(startIndex + MAX_MESSAGE_LENGTH, text.length());
-
-            // Если мы не в конце текста, ищем ближайший перенос строки для более
-            // естественного разбиения
-            if (endIndex < text.length()) {
-                int newlineIndex = text.lastIndexOf("\n", endIndex);
-                if (newlineIndex > startIndex) {
-                    endIndex = newlineIndex + 1;
-                }
-            }
-
+            int endIndex = splitIndex(text, startIndex);
             parts.add(text.substring(startIndex, endIndex));
             startIndex = endIndex;
         }
@@ -144,6 +146,51 @@ public class MessageUtils {
         return parts;
     }
 
+    /**
+     * Находит конец части сообщения, начинающейся с указанной позиции.
+     *
+     * @param text Исходный текст
+     * @param startIndex Начало части
+     * @return Индекс конца части (не включительно)
+     */
+    private int splitIndex(String text, int startIndex) {
+        int endIndex = Math.min(startIndex + MAX_MESSAGE_LENGTH, text.length());
+
+        // Если мы не в конце текста, ищем ближайший перенос строки для более
+        // естественного разбиения
+        if (endIndex < text.length()) {
+            // Перенос строки на позиции endIndex вошел бы в часть длиннее максимальной
+            int newlineIndex = text.lastIndexOf("\n", endIndex - 1);
+            if (newlineIndex > startIndex) {
+                endIndex = newlineIndex + 1;
+            }
+        }
+        return endIndex;
+    }
+
+    /**
+     * Выводит текст, поступающий по частям: первая часть отправляется новым сообщением,
+     * последующие дописываются редактированием этого сообщения не чаще одного раза
+     * за интервал редактирования. Когда текст превышает максимальную длину сообщения,
+     * продолжение выводится в новом сообщении.
+     * Сообщения отправляются без разметки, так как незавершенный Markdown невалиден.
+     *
+     * @param chatId ID чата
+     * @param fragments Поток фрагментов текста
+     * @param priority Приоритет отправки
+     * @return Mono, завершающийся после вывода всего текста
+     */
+    public Mono<Void> sendStreamingMessage(Long chatId, Flux<String> fragments, Priority priority) {
+        StreamingReply reply = new StreamingReply(chatId, priority);
+
+        return fragments
+                .doOnNext(reply::append)
+                .sample(Duration.ofMillis(streamEditIntervalMs))
+                .onBackpressureLatest()
+                .concatMap(ignored -> reply.flush(), 1)
+                .then(Mono.defer(reply::flush));
+    }
+
     /**
      * Отправляет сообщение с Markdown форматированием.
      *
@@ -163,7 +210,7 @@ public class MessageUtils {
         }
 
         try {
-            return bot.execute(message);
+            return await(outboundMessageScheduler.execute(chatId, message, Priority.NORMAL));
         } catch (TelegramApiException e) {
             log.error("Error sending markdown message to chat {}: {}", chatId, e.getMessage(), e);
             return null;
@@ -205,7 +252,7 @@ public class MessageUtils {
         }
 
         try {
-            return bot.execute(photo);
+            return await(outboundMessageScheduler.submit(chatId, Priority.NORMAL, sender -> sender.execute(photo)));
         } catch (TelegramApiException e) {
             log.error("Error sending photo to chat {}: {}", chatId, e.getMessage(), e);
             return null;
@@ -230,7 +277,7 @@ public class MessageUtils {
         }
 
         try {
-            return bot.execute(animation);
+            return await(outboundMessageScheduler.submit(chatId, Priority.NORMAL, sender -> sender.execute(animation)));
         } catch (TelegramApiException e) {
             log.error("Error sending animation to chat {}: {}", chatId, e.getMessage(), e);
             return null;
@@ -269,7 +316,7 @@ public class MessageUtils {
         }
 
         try {
-            bot.execute(editMessage);
+            await(outboundMessageScheduler.execute(chatId, editMessage, Priority.NORMAL));
             return true;
         } catch (TelegramApiException e) {
             log.error("Error editing message {} in chat {}: {}", messageId, chatId, e.getMessage(), e);
@@ -290,7 +337,7 @@ public class MessageUtils {
         deleteMessage.setMessageId(messageId);
 
         try {
-            return bot.execute(deleteMessage);
+            return await(outboundMessageScheduler.execute(chatId, deleteMessage, Priority.NORMAL));
         } catch (TelegramApiException e) {
             log.error("Error deleting message {} in chat {}: {}", messageId, chatId, e.getMessage(), e);
             return false;
@@ -308,6 +355,100 @@ public class MessageUtils {
         return CompletableFuture.supplyAsync(() -> sendMessage(chatId, text));
     }
 
+    /**
+     * Ожидает результат отправки через планировщик исходящих сообщений.
+     *
+     * @param future Future отправки
+     * @return Результат вызова Bot API
+     * @throws TelegramApiException если отправка завершилась ошибкой
+     */
+    private <T> T await(CompletableFuture<T> future) throws TelegramApiException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TelegramApiException("Ожидание отправки прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TelegramApiException telegramApiException) {
+                throw telegramApiException;
+            }
+            throw new TelegramApiException(e.getCause());
+        }
+    }
+
+    /**
+     * Состояние потоковой выдачи текста в один чат.
+     * Фрагменты дописываются из потока ответа, а отправка и редактирование
+     * выполняются последовательно.
+     */
+    private final class StreamingReply {
+        private final Long chatId;
+        private final Priority priority;
+        private StringBuilder buffer = new StringBuilder();
+        private Integer messageId;
+        private int shownLength;
+
+        private StreamingReply(Long chatId, Priority priority) {
+            this.chatId = chatId;
+            this.priority = priority;
+        }
+
+        private synchronized void append(String fragment) {
+            buffer.append(fragment);
+        }
+
+        private Mono<Void> flush() {
+            String text;
+            boolean rollover;
+            synchronized (this) {
+                if (buffer.length() == shownLength) {
+                    return Mono.empty();
+                }
+                String current = buffer.toString();
+                int endIndex = splitIndex(current, 0);
+                rollover = endIndex < current.length();
+                text = current.substring(0, endIndex);
+                if (rollover) {
+                    buffer = new StringBuilder(current.substring(endIndex));
+                }
+            }
+
+            Mono<Void> update = messageId == null
+                    ? send(text)
+                    : edit(text);
+
+            if (rollover) {
+                return update
+                        .then(Mono.fromRunnable(() -> {
+                            messageId = null;
+                            shownLength = 0;
+                        }))
+                        .then(Mono.defer(this::flush));
+            }
+            return update.then(Mono.fromRunnable(() -> shownLength = text.length()));
+        }
+
+        private Mono<Void> send(String text) {
+            SendMessage message = new SendMessage();
+            message.setChatId(chatId);
+            message.setText(text);
+
+            return outboundMessageScheduler.send(chatId, message, priority)
+                    .doOnNext(sent -> messageId = sent.getMessageId())
+                    .then();
+        }
+
+        private Mono<Void> edit(String text) {
+            EditMessageText editMessage = new EditMessageText();
+            editMessage.setChatId(chatId);
+            editMessage.setMessageId(messageId);
+            editMessage.setText(text);
+
+            return outboundMessageScheduler.<Serializable>send(chatId, editMessage, priority)
+                    .then();
+        }
+    }
+
     /**
      * Форматирует сообщение об ошибке.
      *
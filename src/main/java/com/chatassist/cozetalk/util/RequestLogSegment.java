@@ -0,0 +1,363 @@
+package com.chatassist.cozetalk.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Колоночный формат архивного сегмента журнала запросов.
+ * Записи хранятся блоками до {@link #BLOCK_ROWS} строк, отсортированными по времени запроса.
+ * В блоке столбцы идут подряд: ID и время кодируются разностями, статус - номером
+ * в словаре сегмента, тексты запросов и ответов сжимаются одним потоком Deflate в конце блока.
+ * Оглавление в конце файла хранит для каждого блока диапазоны времени и ID пользователей,
+ * поэтому чтение пропускает блоки, не подходящие под условие, а тексты распаковывает
+ * только у блоков с подходящими строками.
+ * <p>
+ * Файл: MAGIC, VERSION, блоки, оглавление, смещение оглавления (8 байт).
+ */
+public final class RequestLogSegment {
+
+    public static final int BLOCK_ROWS = 4096;
+
+    private static final int MAGIC = 0x524C5347; // "RLSG"
+    private static final byte VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 5;
+
+    private RequestLogSegment() {
+    }
+
+    /**
+     * Архивная запись журнала запросов.
+     *
+     * @param processTime Время обработки в миллисекундах или null
+     * @param responseText Текст ответа или null
+     */
+    public record Row(long id, long userId, long requestTimeMillis, String status, Integer processTime,
+                      String requestText, String responseText) {
+    }
+
+    /**
+     * Последовательная запись сегмента. Строки должны поступать в порядке времени запроса.
+     */
+    public static final class Writer implements AutoCloseable {
+
+        private final OutputStream out;
+        private final List<Row> block = new ArrayList<>(BLOCK_ROWS);
+        private final Map<String, Integer> statuses = new LinkedHashMap<>();
+        private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+        private long position = FILE_HEADER_SIZE;
+        private int blockCount;
+        private long rowCount;
+
+        public Writer(OutputStream out) throws IOException {
+            this.out = out;
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).put(VERSION);
+            out.write(header.array());
+        }
+
+        public void append(Row row) throws IOException {
+            block.add(row);
+            rowCount++;
+            if (block.size() == BLOCK_ROWS) {
+                flushBlock();
+            }
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Дописывает последний блок и оглавление. Поток вывода не закрывается.
+         */
+        @Override
+        public void close() throws IOException {
+            flushBlock();
+
+            ByteArrayOutputStream footer = new ByteArrayOutputStream();
+            writeVarLong(footer, statuses.size());
+            for (String status : statuses.keySet()) {
+                writeString(footer, status);
+            }
+            writeVarLong(footer, blockCount);
+            index.writeTo(footer);
+
+            footer.writeTo(out);
+            out.write(ByteBuffer.allocate(Long.BYTES).putLong(position).array());
+            out.flush();
+        }
+
+        private void flushBlock() throws IOException {
+            if (block.isEmpty()) {
+                return;
+            }
+            ByteArrayOutputStream columns = new ByteArrayOutputStream(block.size() * 8);
+            ByteArrayOutputStream texts = new ByteArrayOutputStream(block.size() * 256);
+            long minUser = Long.MAX_VALUE;
+            long maxUser = Long.MIN_VALUE;
+
+            long previousId = 0;
+            for (Row row : block) {
+                writeVarLong(columns, zigZag(row.id() - previousId));
+                previousId = row.id();
+            }
+            for (Row row : block) {
+                writeVarLong(columns, row.userId());
+                minUser = Math.min(minUser, row.userId());
+                maxUser = Math.max(maxUser, row.userId());
+            }
+            long previousTime = 0;
+            for (Row row : block) {
+                writeVarLong(columns, zigZag(row.requestTimeMillis() - previousTime));
+                previousTime = row.requestTimeMillis();
+            }
+            for (Row row : block) {
+                writeVarLong(columns, statuses.computeIfAbsent(row.status(), status -> statuses.size()));
+            }
+            for (Row row : block) {
+                writeVarLong(columns, row.processTime() != null ? row.processTime() + 1L : 0);
+            }
+            for (Row row : block) {
+                writeString(texts, row.requestText());
+                writeNullableString(texts, row.responseText());
+            }
+            byte[] deflated = deflate(texts.toByteArray());
+
+            ByteArrayOutputStream data = new ByteArrayOutputStream(columns.size() + deflated.length + 16);
+            writeVarLong(data, block.size());
+            writeVarLong(data, columns.size());
+            columns.writeTo(data);
+            writeVarLong(data, texts.size());
+            data.write(deflated);
+
+            writeVarLong(index, position);
+            writeVarLong(index, data.size());
+            writeVarLong(index, block.get(0).requestTimeMillis());
+            writeVarLong(index, block.get(block.size() - 1).requestTimeMillis());
+            writeVarLong(index, minUser);
+            writeVarLong(index, maxUser);
+
+            data.writeTo(out);
+            position += data.size();
+            blockCount++;
+            block.clear();
+        }
+    }
+
+    /**
+     * Просматривает сегмент через отображение файла в память.
+     *
+     * @param file Файл сегмента
+     * @param fromMillis Начало периода включительно
+     * @param toMillis Конец периода не включительно
+     * @param userId ID пользователя или null для всех пользователей
+     * @param consumer Получатель подходящих строк
+     */
+    public static void scan(Path file, long fromMillis, long toMillis, Long userId, Consumer<Row> consumer)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, FILE_HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.get() != VERSION) {
+                throw new IOException("Неизвестный формат архивного сегмента: " + file);
+            }
+            long footerPosition = channel.map(FileChannel.MapMode.READ_ONLY, size - Long.BYTES, Long.BYTES).getLong();
+            MappedByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    footerPosition, size - Long.BYTES - footerPosition);
+
+            String[] statuses = new String[(int) readVarLong(footer)];
+            for (int i = 0; i < statuses.length; i++) {
+                statuses[i] = readString(footer);
+            }
+
+            long blockCount = readVarLong(footer);
+            for (long i = 0; i < blockCount; i++) {
+                long position = readVarLong(footer);
+                long length = readVarLong(footer);
+                long minTime = readVarLong(footer);
+                long maxTime = readVarLong(footer);
+                long minUser = readVarLong(footer);
+                long maxUser = readVarLong(footer);
+
+                // Отбор блоков по оглавлению, без чтения их содержимого
+                if (maxTime < fromMillis || minTime >= toMillis) {
+                    continue;
+                }
+                if (userId != null && (userId < minUser || userId > maxUser)) {
+                    continue;
+                }
+                scanBlock(channel.map(FileChannel.MapMode.READ_ONLY, position, length),
+                        statuses, fromMillis, toMillis, userId, consumer);
+            }
+        }
+    }
+
+    private static void scanBlock(ByteBuffer data, String[] statuses, long fromMillis, long toMillis,
+                                  Long userId, Consumer<Row> consumer) throws IOException {
+        int rows = (int) readVarLong(data);
+        readVarLong(data); // размер числовых столбцов
+
+        long[] ids = new long[rows];
+        long previousId = 0;
+        for (int i = 0; i < rows; i++) {
+            previousId += unZigZag(readVarLong(data));
+            ids[i] = previousId;
+        }
+        long[] users = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            users[i] = readVarLong(data);
+        }
+        long[] times = new long[rows];
+        long previousTime = 0;
+        for (int i = 0; i < rows; i++) {
+            previousTime += unZigZag(readVarLong(data));
+            times[i] = previousTime;
+        }
+
+        boolean[] matches = new boolean[rows];
+        boolean any = false;
+        for (int i = 0; i < rows; i++) {
+            matches[i] = times[i] >= fromMillis && times[i] < toMillis && (userId == null || users[i] == userId);
+            any |= matches[i];
+        }
+        if (!any) {
+            return;
+        }
+
+        int[] statusCodes = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            statusCodes[i] = (int) readVarLong(data);
+        }
+        long[] processTimes = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            processTimes[i] = readVarLong(data);
+        }
+
+        int textsSize = (int) readVarLong(data);
+        ByteBuffer texts = ByteBuffer.wrap(inflate(data, textsSize));
+        for (int i = 0; i < rows; i++) {
+            String requestText = readString(texts);
+            String responseText = readNullableString(texts);
+            if (matches[i]) {
+                consumer.accept(new Row(ids[i], users[i], times[i], statuses[statusCodes[i]],
+                        processTimes[i] > 0 ? (int) (processTimes[i] - 1) : null,
+                        requestText, responseText));
+            }
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 16);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(ByteBuffer data, int size) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            byte[] result = new byte[size];
+            int offset = 0;
+            while (offset < size && !inflater.finished()) {
+                int length = inflater.inflate(result, offset, size - offset);
+                if (length == 0 && inflater.needsInput()) {
+                    break;
+                }
+                offset += length;
+            }
+            if (offset != size) {
+                throw new IOException("Поврежден блок текстов архивного сегмента");
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IOException("Поврежден блок текстов архивного сегмента: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    // Длина увеличена на единицу, 0 означает null
+    private static void writeNullableString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.writeBytes(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in);
+        return readUtf8(in, length);
+    }
+
+    private static String readNullableString(ByteBuffer in) {
+        int length = (int) readVarLong(in);
+        return length == 0 ? null : readUtf8(in, length - 1);
+    }
+
+    private static String readUtf8(ByteBuffer in, int length) {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,220 @@
+package db.migration;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Заполняет сжатый столбец response_text_z по сохраненным ответам.
+ * Первый словарь обучается на имеющихся ответах, затем записи сжимаются пакетами
+ * с фиксацией каждого пакета, чтобы не держать долгую транзакцию на всей таблице.
+ * Прерванная миграция продолжается с необработанных записей.
+ * <p>
+ * Столбец response_text сохраняется: он остается источником данных до проверки сжатых
+ * копий, и в него пишутся ответы при request-log.compression.enabled=false.
+ * Исходные тексты очищаются отдельной миграцией V15.
+ * <p>
+ * Выполненная миграция не должна менять результат при изменении кода приложения,
+ * поэтому формат сжатия (версия 1: байт формата, два байта ID словаря, Deflate без
+ * заголовка zlib) и обучение словаря зафиксированы здесь, а не взяты из
+ * DeflateTextCodec и CompressionDictionaryTrainer.
+ */
+@Slf4j
+public class V11__compress_response_texts extends BaseJavaMigration {
+
+    private static final int DICTIONARY_ID = 1;
+    private static final int TRAINING_SAMPLES = 500;
+    private static final int BATCH_SIZE = 500;
+
+    private static final int NO_DICTIONARY = 0;
+    private static final byte FORMAT_RAW = 0;
+    private static final byte FORMAT_DEFLATE = 1;
+    private static final int HEADER_SIZE = 3;
+
+    private static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+    private static final int MIN_PHRASE_WORDS = 2;
+    private static final int MAX_PHRASE_WORDS = 6;
+    private static final int MIN_OCCURRENCES = 3;
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        connection.setAutoCommit(true);
+
+        byte[] dictionary = loadOrTrainDictionary(connection);
+        int dictionaryId = dictionary.length > 0 ? DICTIONARY_ID : NO_DICTIONARY;
+
+        long originalBytes = 0;
+        long storedBytes = 0;
+        long rows = 0;
+        long lastId = -1;
+
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT id, request_time, response_text FROM request_logs "
+                        + "WHERE response_text IS NOT NULL AND response_text_z IS NULL AND id > ? "
+                        + "ORDER BY id LIMIT " + BATCH_SIZE);
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE request_logs SET response_text_z = ? WHERE id = ? AND request_time = ?")) {
+            while (true) {
+                select.setLong(1, lastId);
+                int batch = 0;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        String text = rs.getString(3);
+                        byte[] compressed = compress(text, dictionaryId, dictionary.length > 0 ? dictionary : null);
+                        originalBytes += text.getBytes(StandardCharsets.UTF_8).length;
+                        storedBytes += compressed.length;
+
+                        lastId = rs.getLong(1);
+                        update.setBytes(1, compressed);
+                        update.setLong(2, lastId);
+                        update.setTimestamp(3, rs.getTimestamp(2));
+                        update.addBatch();
+                        batch++;
+                    }
+                }
+                if (batch == 0) {
+                    break;
+                }
+                update.executeBatch();
+                rows += batch;
+            }
+        }
+
+        log.info("Сжато ответов: {}, размер {} -> {} байт", rows, originalBytes, storedBytes);
+    }
+
+    private byte[] loadOrTrainDictionary(Connection connection) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT dictionary FROM compression_dictionaries WHERE id = ?")) {
+            select.setInt(1, DICTIONARY_ID);
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getBytes(1);
+                }
+            }
+        }
+
+        List<String> samples = new ArrayList<>();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT response_text FROM request_logs WHERE response_text IS NOT NULL "
+                        + "ORDER BY request_time DESC LIMIT " + TRAINING_SAMPLES);
+             ResultSet rs = select.executeQuery()) {
+            while (rs.next()) {
+                samples.add(rs.getString(1));
+            }
+        }
+
+        byte[] dictionary = train(samples);
+        if (dictionary.length > 0) {
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO compression_dictionaries (id, dictionary) VALUES (?, ?) ON CONFLICT (id) DO NOTHING")) {
+                insert.setInt(1, DICTIONARY_ID);
+                insert.setBytes(2, dictionary);
+                insert.executeUpdate();
+            }
+        }
+        return dictionary;
+    }
+
+    private static byte[] compress(String text, int dictionaryId, byte[] dictionary) {
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(raw);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + HEADER_SIZE);
+            out.write(FORMAT_DEFLATE);
+            out.write(dictionaryId >>> 8);
+            out.write(dictionaryId);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            if (out.size() < raw.length + HEADER_SIZE) {
+                return out.toByteArray();
+            }
+        } finally {
+            deflater.end();
+        }
+
+        // Сжатие не уменьшило размер - текст сохраняется как есть
+        byte[] data = new byte[raw.length + HEADER_SIZE];
+        data[0] = FORMAT_RAW;
+        System.arraycopy(raw, 0, data, HEADER_SIZE, raw.length);
+        return data;
+    }
+
+    private static byte[] train(List<String> samples) {
+        // Фраза учитывается один раз на образец, чтобы один длинный текст не определял словарь
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (String sample : samples) {
+            String[] words = sample.split("\\s+");
+            Map<String, Boolean> seen = new HashMap<>();
+            for (int start = 0; start < words.length; start++) {
+                StringBuilder phrase = new StringBuilder(words[start]);
+                for (int end = start + 1; end < Math.min(words.length, start + MAX_PHRASE_WORDS); end++) {
+                    phrase.append(' ').append(words[end]);
+                    if (end - start + 1 >= MIN_PHRASE_WORDS) {
+                        String key = phrase.toString();
+                        if (seen.put(key, Boolean.TRUE) == null) {
+                            occurrences.merge(key, 1, Integer::sum);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Map.Entry<String, Integer>> phrases = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : occurrences.entrySet()) {
+            if (entry.getValue() >= MIN_OCCURRENCES) {
+                phrases.add(entry);
+            }
+        }
+        phrases.sort(Comparator.comparingLong(
+                (Map.Entry<String, Integer> entry) -> (long) entry.getValue() * entry.getKey().length()).reversed());
+
+        List<byte[]> selected = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> phrase : phrases) {
+            byte[] bytes = (phrase.getKey() + ' ').getBytes(StandardCharsets.UTF_8);
+            if (size + bytes.length > MAX_DICTIONARY_SIZE) {
+                continue;
+            }
+            selected.add(bytes);
+            size += bytes.length;
+        }
+
+        // Самые полезные фразы - в конце словаря
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(size);
+        for (int i = selected.size() - 1; i >= 0; i--) {
+            dictionary.writeBytes(selected.get(i));
+        }
+        return dictionary.toByteArray();
+    }
+}
@@ -0,0 +1,11 @@
+-- Ответы нейромодели хранятся сжатыми (Deflate с общим словарем, см. ResponseTextCompressor).
+-- Словари неизменяемы: каждая запись ссылается на ID словаря, которым она сжата.
+CREATE TABLE compression_dictionaries (
+                                          id SMALLINT PRIMARY KEY,
+                                          dictionary BYTEA NOT NULL,
+                                          created_at TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+-- Данные уже сжаты, повторное сжатие TOAST бесполезно
+ALTER TABLE request_logs ADD COLUMN response_text_z BYTEA;
+ALTER TABLE request_logs ALTER COLUMN response_text_z SET STORAGE EXTERNAL;
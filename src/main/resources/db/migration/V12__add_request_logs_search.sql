@@ -0,0 +1,16 @@
+-- Полнотекстовый поиск по текстам запросов для администраторов.
+-- Вектор вычисляется базой данных при вставке и хранится в каждой секции,
+-- индекс GIN на секционированной таблице создается и для будущих секций.
+-- Ответы хранятся сжатыми (response_text_z) и в поиск не входят.
+--
+-- ВНИМАНИЕ: добавление STORED-столбца перезаписывает все секции журнала под блокировкой
+-- ACCESS EXCLUSIVE - на время миграции запись и чтение журнала запросов остановлены.
+-- Длительность пропорциональна объему журнала; на большом журнале миграцию следует
+-- выполнять в окно обслуживания (с остановленным приложением), а индекс GIN
+-- при необходимости создавать отдельно по секциям с CONCURRENTLY и присоединять
+-- через ALTER INDEX ... ATTACH PARTITION.
+ALTER TABLE request_logs
+    ADD COLUMN search_vector tsvector
+        GENERATED ALWAYS AS (to_tsvector('russian', request_text)) STORED;
+
+CREATE INDEX idx_request_logs_search ON request_logs USING GIN (search_vector);
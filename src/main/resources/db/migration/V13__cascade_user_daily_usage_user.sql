@@ -0,0 +1,7 @@
+-- Дневное использование удаляется вместе с пользователем, как подписки и платежи.
+-- Ограничение из V4 создано без имени, PostgreSQL назвал его user_daily_usage_user_id_fkey
+
+ALTER TABLE user_daily_usage DROP CONSTRAINT user_daily_usage_user_id_fkey;
+
+ALTER TABLE user_daily_usage
+    ADD CONSTRAINT fk_user_daily_usage_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE;
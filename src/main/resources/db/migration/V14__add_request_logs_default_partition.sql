@@ -0,0 +1,9 @@
+-- Секция по умолчанию принимает записи, для месяца которых секция еще не создана
+-- (например, если задача обслуживания долго не запускалась), вместо ошибки вставки.
+-- RequestLogPartitionMaintenance переносит такие записи в месячную секцию при ее создании.
+CREATE TABLE IF NOT EXISTS request_logs_default PARTITION OF request_logs DEFAULT;
+
+-- Отдельный индекс по времени был заменен составным (user_id, request_time) в V9,
+-- но выборки за период по всем пользователям (статистика, выгрузка, поиск) внутри
+-- секции нуждаются в нем. Индекс на секционированной таблице создается в каждой секции.
+CREATE INDEX IF NOT EXISTS idx_request_logs_time ON request_logs(request_time);
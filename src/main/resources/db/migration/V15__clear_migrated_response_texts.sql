@@ -0,0 +1,10 @@
+-- Второй этап перехода на сжатые ответы (первый - V11).
+-- V11 заполнила response_text_z, не трогая исходные тексты; после того как сжатые
+-- копии читаются приложением, исходные тексты этих записей больше не нужны.
+-- Сам столбец response_text остается: в него пишутся ответы при
+-- request-log.compression.enabled=false, а сущность читает его, если сжатой копии нет.
+-- Место освобождается после VACUUM.
+UPDATE request_logs
+SET response_text = NULL
+WHERE response_text IS NOT NULL
+  AND response_text_z IS NOT NULL;
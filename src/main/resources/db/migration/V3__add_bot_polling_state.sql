@@ -0,0 +1,9 @@
+-- Состояние long polling
+-- Хранит последний подтвержденный update_id, чтобы после перезапуска
+-- бот не получал повторно уже обработанные обновления
+
+CREATE TABLE bot_polling_state (
+                                   bot_username VARCHAR(255) PRIMARY KEY,
+                                   last_update_id BIGINT NOT NULL,
+                                   updated_at TIMESTAMP NOT NULL DEFAULT NOW()
+);
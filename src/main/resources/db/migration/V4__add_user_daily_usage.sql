@@ -0,0 +1,13 @@
+-- Дневное использование запросов пользователями
+-- Заполняется с задержкой из счетчиков в памяти (DailyQuotaService)
+-- и используется для их восстановления после перезапуска
+
+CREATE TABLE user_daily_usage (
+                                  user_id BIGINT NOT NULL REFERENCES users(id),
+                                  usage_date DATE NOT NULL,
+                                  request_count INTEGER NOT NULL DEFAULT 0,
+                                  updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
+                                  PRIMARY KEY (user_id, usage_date)
+);
+
+CREATE INDEX idx_user_daily_usage_date ON user_daily_usage(usage_date);
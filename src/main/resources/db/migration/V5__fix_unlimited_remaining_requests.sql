@@ -0,0 +1,6 @@
+-- Для безлимитного тарифа остаток запросов вычислялся с переполнением (30 * Integer.MAX_VALUE)
+-- и становился отрицательным, из-за чего атомарное списание запроса всегда отклонялось
+
+UPDATE subscriptions
+SET remaining_requests = 2147483647
+WHERE tariff_plan = 'LOVELACE' OR remaining_requests < 0;
@@ -0,0 +1,9 @@
+-- Последовательность для ID журнала запросов с шагом 50.
+-- Каждое значение открывает диапазон из 50 ID (оптимизатор pooled-lo), поэтому приложение
+-- назначает ID записям без обращения к базе данных на каждую вставку и может вставлять их пакетами
+
+CREATE SEQUENCE IF NOT EXISTS request_logs_id_seq INCREMENT BY 50 OWNED BY request_logs.id;
+
+SELECT setval('request_logs_id_seq', COALESCE((SELECT MAX(id) FROM request_logs), 0) + 1, false);
+
+ALTER TABLE request_logs ALTER COLUMN id SET DEFAULT nextval('request_logs_id_seq');
@@ -0,0 +1,7 @@
+-- Триггер пересчитывал COUNT(DISTINCT user_id) и AVG(process_time) по всем запросам
+-- текущего дня при каждой вставке в request_logs. Статистика использования теперь
+-- накапливается в приложении и периодически сохраняется в usage_statistics
+
+DROP TRIGGER IF EXISTS request_log_insert_trigger ON request_logs;
+
+DROP FUNCTION IF EXISTS update_usage_statistics();
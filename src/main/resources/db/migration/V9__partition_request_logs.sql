@@ -0,0 +1,87 @@
+-- Журнал запросов секционируется по месяцам (декларативное секционирование по request_time).
+-- Вставки затрагивают только индексы текущей секции, запросы за день - только ее,
+-- а устаревшие данные удаляются целыми секциями вместо DELETE.
+-- Будущие секции создаются и устаревшие удаляются задачей RequestLogPartitionMaintenance.
+
+-- Представления зависят от таблицы и пересоздаются после преобразования
+DROP VIEW IF EXISTS user_activity_view;
+DROP VIEW IF EXISTS popular_requests_view;
+
+ALTER TABLE request_logs RENAME TO request_logs_legacy;
+ALTER SEQUENCE request_logs_id_seq OWNED BY NONE;
+
+-- Ключ секционирования обязан входить в первичный ключ
+CREATE TABLE request_logs (
+                              id BIGINT NOT NULL DEFAULT nextval('request_logs_id_seq'),
+                              user_id BIGINT NOT NULL,
+                              request_time TIMESTAMP NOT NULL DEFAULT NOW(),
+                              request_text TEXT NOT NULL,
+                              response_text TEXT,
+                              status VARCHAR(20) NOT NULL,
+                              process_time INTEGER,
+                              CONSTRAINT pk_request_logs PRIMARY KEY (id, request_time),
+                              CONSTRAINT fk_request_log_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+) PARTITION BY RANGE (request_time);
+
+ALTER SEQUENCE request_logs_id_seq OWNED BY request_logs.id;
+
+-- Один составной индекс вместо отдельных по user_id, request_time и status:
+-- отбор по времени выполняется выбором секций
+CREATE INDEX idx_request_logs_user_time ON request_logs(user_id, request_time);
+
+-- Секции от месяца самой старой записи до двух месяцев вперед
+DO $$
+DECLARE
+    month_start DATE;
+    last_month DATE := date_trunc('month', NOW())::date + INTERVAL '2 months';
+BEGIN
+    SELECT COALESCE(date_trunc('month', MIN(request_time))::date, date_trunc('month', NOW())::date)
+    INTO month_start
+    FROM request_logs_legacy;
+
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF request_logs FOR VALUES FROM (%L) TO (%L)',
+                       'request_logs_' || to_char(month_start, 'YYYY_MM'),
+                       month_start,
+                       (month_start + INTERVAL '1 month')::date);
+        month_start := (month_start + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO request_logs (id, user_id, request_time, request_text, response_text, status, process_time)
+SELECT id, user_id, request_time, request_text, response_text, status, process_time
+FROM request_logs_legacy;
+
+DROP TABLE request_logs_legacy;
+
+CREATE VIEW user_activity_view AS
+SELECT
+    u.id AS user_id,
+    u.telegram_id,
+    u.username,
+    COUNT(r.id) AS total_requests,
+    MAX(r.request_time) AS last_activity,
+    COUNT(CASE WHEN r.status = 'ERROR' THEN 1 END) AS error_count,
+    AVG(r.process_time) AS avg_process_time
+FROM
+    users u
+        LEFT JOIN
+    request_logs r ON u.id = r.user_id
+GROUP BY
+    u.id, u.telegram_id, u.username;
+
+CREATE VIEW popular_requests_view AS
+SELECT
+    request_text,
+    COUNT(*) AS request_count,
+    AVG(process_time) AS avg_process_time
+FROM
+    request_logs
+WHERE
+        request_time > CURRENT_DATE - INTERVAL '30 days'
+GROUP BY
+    request_text
+HAVING
+        COUNT(*) > 2
+ORDER BY
+    request_count DESC;
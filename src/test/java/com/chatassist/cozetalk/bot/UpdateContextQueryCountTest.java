@@ -0,0 +1,151 @@
+package com.chatassist.cozetalk.bot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import com.chatassist.cozetalk.bot.dispatch.UpdateDeduplicator;
+import com.chatassist.cozetalk.bot.dispatch.UpdateDispatcher;
+import com.chatassist.cozetalk.bot.handler.CallbackQueryHandler;
+import com.chatassist.cozetalk.bot.handler.CommandHandler;
+import com.chatassist.cozetalk.bot.handler.MessageHandler;
+import com.chatassist.cozetalk.bot.sender.OutboundMessageScheduler;
+import com.chatassist.cozetalk.config.BotConfig;
+import com.chatassist.cozetalk.domain.dto.SubscriptionSnapshot;
+import com.chatassist.cozetalk.domain.dto.UpdateContext;
+import com.chatassist.cozetalk.domain.enums.TariffPlan;
+import com.chatassist.cozetalk.repository.SubscriptionRepository;
+import com.chatassist.cozetalk.repository.UserRepository;
+import com.chatassist.cozetalk.service.DailyQuotaService;
+import com.chatassist.cozetalk.service.KnownUserIndex;
+import com.chatassist.cozetalk.service.SubscriptionService;
+import com.chatassist.cozetalk.service.SubscriptionSnapshotCache;
+import com.chatassist.cozetalk.service.UserService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Количество запросов к базе данных при обработке текстового сообщения.
+ * Пользователь и подписка разрешаются один раз и передаются обработчикам в {@link UpdateContext}:
+ * первое сообщение нового пользователя стоит одной вставки и одной загрузки подписки,
+ * следующие сообщения обходятся без запросов к базе данных.
+ */
+class UpdateContextQueryCountTest {
+
+    private static final long TELEGRAM_ID = 1001L;
+    private static final long USER_ID = 7L;
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final SubscriptionRepository subscriptionRepository = mock(SubscriptionRepository.class);
+    private final MessageHandler messageHandler = mock(MessageHandler.class);
+
+    private UpdateDispatcher updateDispatcher;
+    private TelegramBot telegramBot;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+        when(userRepository.insertIfNotExists(anyLong(), anyString(), anyString(), anyString())).thenReturn(1);
+        when(subscriptionRepository.findSnapshotByTelegramId(TELEGRAM_ID)).thenReturn(Optional.of(
+                new SubscriptionSnapshot(USER_ID, TariffPlan.values()[0], LocalDateTime.now().plusDays(10), 10)));
+
+        DailyQuotaService dailyQuotaService = new DailyQuotaService(mock(JdbcTemplate.class), meterRegistry, 100);
+        SubscriptionSnapshotCache snapshotCache =
+                new SubscriptionSnapshotCache(subscriptionRepository, meterRegistry, 100, 10);
+        SubscriptionService subscriptionService = new SubscriptionService(subscriptionRepository, userRepository,
+                dailyQuotaService, snapshotCache, eventPublisher, Schedulers.immediate());
+        UserService userService = new UserService(userRepository, eventPublisher,
+                new KnownUserIndex(mock(JdbcTemplate.class), meterRegistry, 100));
+
+        when(messageHandler.handleMessage(any(Message.class), any(UpdateContext.class))).thenReturn(Mono.empty());
+
+        BotConfig botConfig = mock(BotConfig.class);
+        when(botConfig.getToken()).thenReturn("test-token");
+
+        updateDispatcher = new UpdateDispatcher(meterRegistry, 2, 20, 100, UpdateDispatcher.OverflowPolicy.REJECT);
+        telegramBot = new TelegramBot(botConfig,
+                mock(CommandHandler.class),
+                messageHandler,
+                mock(CallbackQueryHandler.class),
+                userService,
+                subscriptionService,
+                updateDispatcher,
+                new UpdateDeduplicator(meterRegistry, 64),
+                mock(OutboundMessageScheduler.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Потоки диспетчера не являются демонами и без остановки не дают завершиться JVM
+        updateDispatcher.shutdown();
+    }
+
+    @Test
+    void userAndSubscriptionAreResolvedOncePerUser() {
+        int messages = 5;
+        for (int i = 0; i < messages; i++) {
+            assertTrue(telegramBot.submit(textUpdate(i + 1, "вопрос " + i)));
+        }
+        assertTrue(updateDispatcher.awaitIdle(10_000));
+
+        // Первое сообщение: регистрация и загрузка снимка подписки, дальше - только память
+        verify(userRepository, times(1)).insertIfNotExists(anyLong(), anyString(), anyString(), anyString());
+        verify(subscriptionRepository, times(1)).findSnapshotByTelegramId(TELEGRAM_ID);
+        verifyNoMoreInteractions(userRepository, subscriptionRepository);
+
+        ArgumentCaptor<UpdateContext> contexts = ArgumentCaptor.forClass(UpdateContext.class);
+        verify(messageHandler, times(messages)).handleMessage(any(Message.class), contexts.capture());
+        for (UpdateContext context : contexts.getAllValues()) {
+            assertEquals(USER_ID, context.getUserId());
+            assertTrue(context.hasActiveSubscription());
+        }
+    }
+
+    private static Update textUpdate(int updateId, String text) {
+        User from = new User();
+        from.setId(TELEGRAM_ID);
+        from.setUserName("user");
+        from.setFirstName("Имя");
+        from.setLastName("Фамилия");
+
+        Chat chat = new Chat();
+        chat.setId(TELEGRAM_ID);
+        chat.setType("private");
+
+        Message message = new Message();
+        message.setMessageId(updateId);
+        message.setFrom(from);
+        message.setChat(chat);
+        message.setText(text);
+
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        update.setMessage(message);
+        return update;
+    }
+}
@@ -0,0 +1,130 @@
+package com.chatassist.cozetalk.bot.dispatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class UpdateDispatcherTest {
+
+    private UpdateDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void chatLaneWaitsForAsyncCompletion() throws Exception {
+        dispatcher = new UpdateDispatcher(new SimpleMeterRegistry(), 4, 20, 100,
+                UpdateDispatcher.OverflowPolicy.REJECT);
+        List<String> events = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> firstReply = new CompletableFuture<>();
+        CountDownLatch secondStarted = new CountDownLatch(1);
+
+        assertTrue(dispatcher.dispatch(1L, true, () -> {
+            events.add("first started");
+            return firstReply;
+        }, () -> {
+        }));
+        assertTrue(dispatcher.dispatch(1L, true, () -> {
+            events.add("second started");
+            secondStarted.countDown();
+            return CompletableFuture.completedFuture(null);
+        }, () -> {
+        }));
+
+        // Пока ответ на первое обновление не доставлен, второе не запускается
+        assertFalse(secondStarted.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(2, dispatcher.getQueuedUpdates());
+
+        events.add("first delivered");
+        firstReply.complete(null);
+
+        assertTrue(secondStarted.await(5, TimeUnit.SECONDS));
+        assertTrue(dispatcher.awaitIdle(5_000));
+        assertEquals(List.of("first started", "first delivered", "second started"), events);
+        assertEquals(0, dispatcher.getQueuedUpdates());
+    }
+
+    @Test
+    void globalLimitCountsUpdatesInProgress() {
+        dispatcher = new UpdateDispatcher(new SimpleMeterRegistry(), 4, 20, 2,
+                UpdateDispatcher.OverflowPolicy.REJECT);
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+
+        assertTrue(dispatcher.dispatch(1L, false, () -> pending, () -> {
+        }));
+        assertTrue(dispatcher.dispatch(2L, false, () -> pending, () -> {
+        }));
+        // Обе задачи уже запущены, но их результаты не завершены
+        assertFalse(dispatcher.dispatch(3L, false, () -> pending, () -> {
+        }));
+
+        pending.complete(null);
+        assertTrue(dispatcher.awaitIdle(5_000));
+    }
+
+    @Test
+    void globalOverflowEvictsOldestDroppableOfAnyChat() {
+        dispatcher = new UpdateDispatcher(new SimpleMeterRegistry(), 4, 20, 5,
+                UpdateDispatcher.OverflowPolicy.DROP_OLDEST_NON_COMMAND);
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        List<String> dropped = new CopyOnWriteArrayList<>();
+
+        // Команды занимают очереди чатов 1 и 2, за ними ждут обычные сообщения
+        assertTrue(dispatcher.dispatch(1L, false, () -> pending, () -> dropped.add("command 1")));
+        assertTrue(dispatcher.dispatch(1L, true, () -> pending, () -> dropped.add("message 1")));
+        assertTrue(dispatcher.dispatch(2L, false, () -> pending, () -> dropped.add("command 2")));
+        assertTrue(dispatcher.dispatch(2L, true, () -> pending, () -> dropped.add("message 2")));
+        assertTrue(dispatcher.dispatch(3L, false, () -> pending, () -> dropped.add("command 3")));
+
+        // В очереди чата 3 вытеснять нечего, вытесняется самое старое сообщение другого чата
+        assertTrue(dispatcher.dispatch(3L, true, () -> pending, () -> dropped.add("message 3")));
+        assertEquals(List.of("message 1"), dropped);
+        assertTrue(dispatcher.dispatch(4L, false, () -> pending, () -> dropped.add("command 4")));
+        assertEquals(List.of("message 1", "message 2"), dropped);
+        assertEquals(5, dispatcher.getQueuedUpdates());
+
+        pending.complete(null);
+        assertTrue(dispatcher.awaitIdle(5_000));
+        assertEquals(0, dispatcher.getQueuedUpdates());
+    }
+
+    @Test
+    void rejectedLaneReportsAcceptedTasksAsDropped() {
+        dispatcher = new UpdateDispatcher(new SimpleMeterRegistry(), 4, 20, 100,
+                UpdateDispatcher.OverflowPolicy.REJECT);
+        CompletableFuture<Void> firstReply = new CompletableFuture<>();
+        List<String> dropped = new CopyOnWriteArrayList<>();
+
+        assertTrue(dispatcher.dispatch(1L, false, () -> firstReply, () -> dropped.add("first")));
+        assertTrue(dispatcher.dispatch(1L, true, () -> CompletableFuture.completedFuture(null),
+                () -> dropped.add("second")));
+        assertTrue(dispatcher.dispatch(1L, true, () -> CompletableFuture.completedFuture(null),
+                () -> dropped.add("third")));
+
+        // Пул перестает принимать задачи, пока очередь чата ждет ответа на первое обновление
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(dispatcher, "executor");
+        executor.shutdownNow();
+        firstReply.complete(null);
+
+        assertEquals(List.of("second", "third"), dropped);
+        assertEquals(0, dispatcher.getQueuedUpdates());
+        assertTrue(dispatcher.awaitIdle(1_000));
+    }
+}
@@ -0,0 +1,221 @@
+package com.chatassist.cozetalk.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.ActionType;
+import org.telegram.telegrambots.meta.api.methods.send.SendChatAction;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import com.chatassist.cozetalk.bot.sender.OutboundMessageScheduler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.test.StepVerifier;
+
+/**
+ * Проверка {@link TelegramBotApiClient} на заглушке Bot API: адрес и тело вызова,
+ * разбор результата, ошибки ok=false и повтор ответа 429 по retry_after
+ * в {@link OutboundMessageScheduler}.
+ */
+class TelegramBotApiClientTest {
+
+    private static final String TOKEN = "123:test";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static final String MESSAGE_RESULT =
+            "{\"ok\":true,\"result\":{\"message_id\":5,\"date\":0,\"chat\":{\"id\":1,\"type\":\"private\"},"
+                    + "\"text\":\"Ответ\"}}";
+    private static final String TRUE_RESULT = "{\"ok\":true,\"result\":true}";
+
+    private final Queue<StubResponse> responses = new ConcurrentLinkedQueue<>();
+    private final Queue<StubRequest> requests = new ConcurrentLinkedQueue<>();
+
+    private DisposableServer server;
+    private TelegramBotApiClient client;
+
+    @BeforeEach
+    void setUp() {
+        server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.post("/bot{token}/{method}", (request, response) ->
+                        request.receive().aggregate().asString(StandardCharsets.UTF_8).defaultIfEmpty("")
+                                .flatMap(body -> {
+                                    requests.add(new StubRequest(request.param("token"), request.param("method"),
+                                            request.requestHeaders().get(HttpHeaders.CONTENT_TYPE), body));
+                                    StubResponse stub = responses.poll();
+                                    return response.status(HttpResponseStatus.valueOf(stub.status()))
+                                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                            .sendString(Mono.just(stub.body()), StandardCharsets.UTF_8)
+                                            .then();
+                                })))
+                .bindNow();
+        client = new TelegramBotApiClient(WebClient.create(), "http://localhost:" + server.port(), TOKEN);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.disposeNow();
+    }
+
+    @Test
+    void sendMessagePostsJsonAndParsesMessage() {
+        responses.add(new StubResponse(200, MESSAGE_RESULT));
+
+        Message message = client.execute(new SendMessage("1", "Вопрос")).block(TIMEOUT);
+
+        assertEquals(5, message.getMessageId());
+        assertEquals("Ответ", message.getText());
+        StubRequest request = requests.poll();
+        assertEquals(TOKEN, request.token());
+        assertEquals("sendmessage", request.method());
+        assertEquals(MediaType.APPLICATION_JSON_VALUE, request.contentType());
+        assertTrue(request.body().contains("\"chat_id\":\"1\""), request.body());
+        assertTrue(request.body().contains("\"text\":\"Вопрос\""), request.body());
+    }
+
+    @Test
+    void editMessageTextParsesMessageOrBoolean() {
+        responses.add(new StubResponse(200, MESSAGE_RESULT));
+        responses.add(new StubResponse(200, TRUE_RESULT));
+        EditMessageText edit = EditMessageText.builder().chatId("1").messageId(5).text("Ответ").build();
+
+        Serializable edited = client.execute(edit).block(TIMEOUT);
+        Serializable inline = client.execute(edit).block(TIMEOUT);
+
+        assertInstanceOf(Message.class, edited);
+        assertEquals(Boolean.TRUE, inline);
+        assertEquals("editmessagetext", requests.poll().method());
+        assertTrue(requests.poll().body().contains("\"message_id\":5"));
+    }
+
+    @Test
+    void sendChatActionAndAnswerCallbackQueryReturnTrue() {
+        responses.add(new StubResponse(200, TRUE_RESULT));
+        responses.add(new StubResponse(200, TRUE_RESULT));
+
+        Boolean typing = client.execute(SendChatAction.builder().chatId("1").action(ActionType.TYPING.toString())
+                .build()).block(TIMEOUT);
+        Boolean answered = client.execute(AnswerCallbackQuery.builder().callbackQueryId("cb-1").build())
+                .block(TIMEOUT);
+
+        assertEquals(Boolean.TRUE, typing);
+        assertEquals(Boolean.TRUE, answered);
+        StubRequest chatAction = requests.poll();
+        assertEquals("sendChatAction", chatAction.method());
+        assertTrue(chatAction.body().contains("\"action\":\"typing\""), chatAction.body());
+        StubRequest callback = requests.poll();
+        assertEquals("answercallbackquery", callback.method());
+        assertTrue(callback.body().contains("\"callback_query_id\":\"cb-1\""), callback.body());
+    }
+
+    @Test
+    void okFalseMapsToTelegramApiRequestException() {
+        responses.add(new StubResponse(400,
+                "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request: chat not found\"}"));
+
+        StepVerifier.create(client.execute(new SendMessage("1", "Вопрос")))
+                .expectErrorSatisfies(error -> {
+                    TelegramApiRequestException requestException =
+                            assertInstanceOf(TelegramApiRequestException.class, error);
+                    assertEquals(400, requestException.getErrorCode());
+                    assertEquals("Bad Request: chat not found", requestException.getApiResponse());
+                })
+                .verify(TIMEOUT);
+    }
+
+    @Test
+    void tooManyRequestsCarriesRetryAfter() {
+        responses.add(new StubResponse(429, tooManyRequests(7)));
+
+        StepVerifier.create(client.execute(new SendMessage("1", "Вопрос")))
+                .expectErrorSatisfies(error -> {
+                    TelegramApiRequestException requestException =
+                            assertInstanceOf(TelegramApiRequestException.class, error);
+                    assertEquals(429, requestException.getErrorCode());
+                    assertEquals(7, requestException.getParameters().getRetryAfter());
+                })
+                .verify(TIMEOUT);
+    }
+
+    @Test
+    void schedulerRetriesAfterTooManyRequests() throws Exception {
+        responses.add(new StubResponse(429, tooManyRequests(1)));
+        responses.add(new StubResponse(200, MESSAGE_RESULT));
+        @SuppressWarnings("unchecked")
+        ObjectProvider<TelegramLongPollingBot> botProvider = mock(ObjectProvider.class);
+        OutboundMessageScheduler scheduler = new OutboundMessageScheduler(botProvider, client,
+                new SimpleMeterRegistry(), 30, 1, 1, 100, 3, true);
+        scheduler.start();
+        try {
+            long start = System.nanoTime();
+            Message message = scheduler.execute(1L, new SendMessage("1", "Вопрос"),
+                    OutboundMessageScheduler.Priority.NORMAL).get(10, TimeUnit.SECONDS);
+
+            assertEquals(5, message.getMessageId());
+            assertEquals(2, requests.size());
+            assertTrue(System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(1), "повтор раньше retry_after");
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    void schedulerGivesUpAfterMaxRetries() {
+        for (int i = 0; i < 2; i++) {
+            responses.add(new StubResponse(429, tooManyRequests(0)));
+        }
+        @SuppressWarnings("unchecked")
+        ObjectProvider<TelegramLongPollingBot> botProvider = mock(ObjectProvider.class);
+        OutboundMessageScheduler scheduler = new OutboundMessageScheduler(botProvider, client,
+                new SimpleMeterRegistry(), 30, 10, 1, 100, 1, true);
+        scheduler.start();
+        try {
+            ExecutionException error = assertThrows(ExecutionException.class, () -> scheduler.execute(1L,
+                    new SendMessage("1", "Вопрос"), OutboundMessageScheduler.Priority.NORMAL)
+                    .get(10, TimeUnit.SECONDS));
+
+            assertInstanceOf(TelegramApiRequestException.class, error.getCause());
+            assertEquals(2, requests.size());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    private static String tooManyRequests(int retryAfter) {
+        return "{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests: retry after " + retryAfter
+                + "\",\"parameters\":{\"retry_after\":" + retryAfter + "}}";
+    }
+
+    private record StubResponse(int status, String body) {
+    }
+
+    private record StubRequest(String token, String method, String contentType, String body) {
+    }
+}
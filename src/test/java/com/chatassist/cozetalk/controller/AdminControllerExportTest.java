@@ -0,0 +1,161 @@
+package com.chatassist.cozetalk.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.chatassist.cozetalk.domain.enums.ExportFormat;
+import com.chatassist.cozetalk.domain.enums.PaymentStatus;
+import com.chatassist.cozetalk.service.CozeResponseCache;
+import com.chatassist.cozetalk.service.ExportService;
+import com.chatassist.cozetalk.service.PaymentService;
+import com.chatassist.cozetalk.service.RequestLogService;
+import com.chatassist.cozetalk.service.ResponseTextCompressor;
+import com.chatassist.cozetalk.service.SubscriptionService;
+import com.chatassist.cozetalk.service.UserService;
+import com.chatassist.cozetalk.util.ExportWriter;
+
+/**
+ * Проверка выгрузки в {@link AdminController}: заголовки ответа, передача границ периода
+ * и статуса в {@link ExportService}, отклонение неверных параметров и запись строк
+ * в ответ по мере выгрузки, в том числе со сжатием gzip.
+ */
+class AdminControllerExportTest {
+
+    private static final int ROWS = 5_000;
+    private static final String RESPONSE_TEXT = "ответ ".repeat(50);
+
+    private final ExportService exportService = mock(ExportService.class);
+
+    private AdminController adminController;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        adminController = new AdminController(mock(UserService.class), mock(SubscriptionService.class),
+                mock(PaymentService.class), mock(RequestLogService.class), mock(CozeResponseCache.class),
+                mock(ResponseTextCompressor.class), exportService);
+        mockMvc = MockMvcBuilders.standaloneSetup(adminController).build();
+    }
+
+    @Test
+    void requestLogExportPassesPeriodBoundsAndStatus() throws Exception {
+        mockMvc.perform(get("/admin/export/request-logs")
+                        .param("format", "NDJSON")
+                        .param("from", "2024-03-01T00:00:00")
+                        .param("to", "2024-04-01T00:00:00")
+                        .param("status", "SUCCESS"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/x-ndjson;charset=UTF-8"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"request_logs.ndjson\""));
+
+        verify(exportService).exportRequestLogs(eq(LocalDateTime.of(2024, 3, 1, 0, 0)),
+                eq(LocalDateTime.of(2024, 4, 1, 0, 0)), eq("SUCCESS"), eq(ExportFormat.NDJSON), any());
+    }
+
+    @Test
+    void paymentExportDefaultsToCsvWithoutBounds() throws Exception {
+        mockMvc.perform(get("/admin/export/payments"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "text/csv;charset=UTF-8"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"payments.csv\""));
+
+        verify(exportService).exportPayments(isNull(), isNull(), isNull(), eq(ExportFormat.CSV), any());
+    }
+
+    @Test
+    void invalidParametersAreRejectedBeforeExport() throws Exception {
+        mockMvc.perform(get("/admin/export/request-logs").param("format", "XML"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/admin/export/request-logs").param("from", "01.03.2024"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/admin/export/payments").param("status", "UNKNOWN"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(exportService);
+    }
+
+    @Test
+    void rowsAreWrittenToResponseDuringExport() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicInteger bytesBeforeLastRow = new AtomicInteger();
+        doAnswer(invocation -> {
+            writeRows(invocation.getArgument(3), invocation.getArgument(4),
+                    () -> bytesBeforeLastRow.set(response.getContentAsByteArray().length));
+            return (long) ROWS;
+        }).when(exportService).exportRequestLogs(any(), any(), any(), eq(ExportFormat.CSV), any());
+
+        adminController.exportRequestLogs(ExportFormat.CSV, false, null, null, null, response);
+
+        // Пока выгрузка не завершена, ответ уже содержит почти все строки: они не копятся в памяти
+        int total = response.getContentAsByteArray().length;
+        assertTrue(bytesBeforeLastRow.get() >= total - 128 * 1024,
+                "до конца выгрузки передано " + bytesBeforeLastRow.get() + " байт из " + total);
+        assertEquals(ROWS + 1, response.getContentAsString(StandardCharsets.UTF_8).split("\r\n").length);
+    }
+
+    @Test
+    void gzipExportIsStreamedAndDecompressesToRows() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicInteger bytesBeforeLastRow = new AtomicInteger();
+        doAnswer(invocation -> {
+            writeRows(invocation.getArgument(3), invocation.getArgument(4),
+                    () -> bytesBeforeLastRow.set(response.getContentAsByteArray().length));
+            return (long) ROWS;
+        }).when(exportService).exportPayments(any(), any(), any(), eq(ExportFormat.NDJSON), any());
+
+        adminController.exportPayments(ExportFormat.NDJSON, true, null, null, PaymentStatus.SUCCEEDED, response);
+
+        assertEquals("application/gzip", response.getContentType());
+        assertEquals("attachment; filename=\"payments.ndjson.gz\"", response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+        assertTrue(bytesBeforeLastRow.get() > 0, "сжатые данные не передавались до конца выгрузки");
+
+        String ndjson;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            ndjson = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertEquals(ROWS, ndjson.split("\n").length);
+        assertTrue(ndjson.startsWith("{\"id\":0,"), ndjson.substring(0, 40));
+    }
+
+    /**
+     * Пишет строки, как {@link ExportService}, и перед последней строкой вызывает beforeLastRow.
+     */
+    private static void writeRows(ExportFormat format, OutputStream out, Runnable beforeLastRow) throws IOException {
+        try (ExportWriter writer = ExportWriter.create(format, out, List.of("id", "amount", "response_text"))) {
+            for (long id = 0; id < ROWS; id++) {
+                if (id == ROWS - 1) {
+                    beforeLastRow.run();
+                }
+                writer.writeRow(new Object[]{id, BigDecimal.TEN, RESPONSE_TEXT});
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.chatassist.cozetalk.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Нагрузочная проверка {@link DailyQuotaService#tryIncrement}: одновременные запросы
+ * одного пользователя из многих потоков не превышают дневной лимит.
+ */
+class DailyQuotaServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int DAILY_LIMIT = 50;
+
+    private DailyQuotaService dailyQuotaService;
+
+    @BeforeEach
+    void setUp() {
+        // Сохранение в базу данных не участвует в проверке лимита
+        dailyQuotaService = new DailyQuotaService(mock(JdbcTemplate.class), new SimpleMeterRegistry(), 100);
+        dailyQuotaService.rebuild();
+    }
+
+    @Test
+    void tryIncrementDoesNotOvershootDailyLimit() throws Exception {
+        long telegramId = 42L;
+        AtomicInteger accepted = new AtomicInteger();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < DAILY_LIMIT * 10; i++) {
+                if (dailyQuotaService.tryIncrement(telegramId, DAILY_LIMIT) != null) {
+                    accepted.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(DAILY_LIMIT, accepted.get());
+        assertEquals(DAILY_LIMIT, dailyQuotaService.getUsedToday(telegramId));
+    }
+
+    @Test
+    void refundsReleaseExactlyOneSlotEach() throws Exception {
+        long telegramId = 7L;
+
+        // Каждый поток резервирует запрос и возвращает его, как при ошибке нейромодели
+        runConcurrently(() -> {
+            for (int i = 0; i < 2_000; i++) {
+                LocalDate day = dailyQuotaService.tryIncrement(telegramId, DAILY_LIMIT);
+                if (day != null) {
+                    dailyQuotaService.decrement(telegramId, day);
+                }
+            }
+        });
+
+        assertEquals(0, dailyQuotaService.getUsedToday(telegramId));
+        // После возвратов доступен весь лимит, и не больше
+        for (int i = 0; i < DAILY_LIMIT; i++) {
+            assertNotNull(dailyQuotaService.tryIncrement(telegramId, DAILY_LIMIT));
+        }
+        assertNull(dailyQuotaService.tryIncrement(telegramId, DAILY_LIMIT));
+    }
+
+    @Test
+    void refundOfPreviousDayDoesNotReleaseTodaySlot() {
+        long telegramId = 9L;
+        LocalDate today = dailyQuotaService.tryIncrement(telegramId, DAILY_LIMIT);
+
+        // Резерв, сделанный до полуночи и возвращенный после нее
+        dailyQuotaService.decrement(telegramId, today.minusDays(1));
+        assertEquals(1, dailyQuotaService.getUsedToday(telegramId));
+
+        dailyQuotaService.decrement(telegramId, today);
+        assertEquals(0, dailyQuotaService.getUsedToday(telegramId));
+    }
+
+    private static void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.chatassist.cozetalk.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Сравнение времени проверки дневного лимита: COUNT по журналу запросов, как в
+ * {@link com.chatassist.cozetalk.repository.RequestLogRepository#countRequestsForUserToday},
+ * и счетчик {@link DailyQuotaService} в памяти.
+ * Журнал размещается во встроенной базе H2 с тем же индексом (user_id, request_time),
+ * поэтому время COUNT не включает сетевой обмен с PostgreSQL и получение соединения из пула -
+ * в работе разница больше измеренной.
+ * Счетчики восстанавливаются из той же базы, и их значения сверяются с журналом.
+ */
+class DailyQuotaServiceTimingTest {
+
+    private static final int USERS = 1_000;
+    private static final int LOG_ROWS = 100_000;
+    private static final int LOOKUPS = 5_000;
+    private static final long TELEGRAM_ID_OFFSET = 1_000_000L;
+
+    private static final String OLD_COUNT_SQL =
+            "SELECT COUNT(*) FROM request_logs r WHERE r.user_id = ? "
+                    + "AND r.request_time BETWEEN ? AND ? AND r.status <> 'CACHED'";
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private DailyQuotaService dailyQuotaService;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, telegram_id BIGINT NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE request_logs (id BIGINT PRIMARY KEY, user_id BIGINT NOT NULL, "
+                + "request_time TIMESTAMP NOT NULL, status VARCHAR(20) NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX idx_request_logs_user_time ON request_logs(user_id, request_time)");
+        jdbcTemplate.execute("CREATE TABLE user_daily_usage (user_id BIGINT NOT NULL, usage_date DATE NOT NULL, "
+                + "request_count INT NOT NULL, updated_at TIMESTAMP, PRIMARY KEY (user_id, usage_date))");
+
+        jdbcTemplate.update("INSERT INTO users SELECT X, X + " + TELEGRAM_ID_OFFSET
+                + " FROM SYSTEM_RANGE(1, " + USERS + ")");
+        // Журнал за 30 дней; часть ответов из кэша и с ошибкой
+        jdbcTemplate.update("INSERT INTO request_logs SELECT X, MOD(X, " + USERS + ") + 1, "
+                + "DATEADD('MINUTE', -MOD(X * 7, 43200), LOCALTIMESTAMP), "
+                + "CASE WHEN MOD(X, 10) = 0 THEN 'CACHED' WHEN MOD(X, 17) = 0 THEN 'ERROR' ELSE 'SUCCESS' END "
+                + "FROM SYSTEM_RANGE(1, " + LOG_ROWS + ")");
+
+        dailyQuotaService = new DailyQuotaService(jdbcTemplate, new SimpleMeterRegistry(), USERS);
+        dailyQuotaService.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void inMemoryCounterIsFasterThanCountQuery() {
+        LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
+        LocalDateTime endOfDay = LocalDate.now().atTime(LocalTime.MAX);
+
+        // Запросы, возвращенные в лимит (из кэша и с ошибкой), не учитываются
+        Map<Long, Integer> logged = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, COUNT(*) FROM request_logs WHERE request_time >= ? "
+                        + "AND status NOT IN ('CACHED', 'ERROR') GROUP BY user_id",
+                rs -> {
+                    logged.put(rs.getLong(1), rs.getInt(2));
+                },
+                Timestamp.valueOf(startOfDay));
+        for (long userId = 1; userId <= USERS; userId++) {
+            assertEquals(logged.getOrDefault(userId, 0), dailyQuotaService.getUsedToday(userId + TELEGRAM_ID_OFFSET));
+        }
+
+        long[] userIds = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            userIds[i] = ThreadLocalRandom.current().nextLong(1, USERS + 1);
+        }
+
+        // Прогрев обоих путей перед измерением
+        countQuery(userIds, startOfDay, endOfDay);
+        inMemory(userIds);
+
+        long countStart = System.nanoTime();
+        long countChecksum = countQuery(userIds, startOfDay, endOfDay);
+        long countNanos = System.nanoTime() - countStart;
+
+        long memoryStart = System.nanoTime();
+        long memoryChecksum = inMemory(userIds);
+        long memoryNanos = System.nanoTime() - memoryStart;
+
+        System.out.printf("Проверка лимита, %d обращений: COUNT %.2f мкс, счетчик в памяти %.3f мкс на обращение%n",
+                LOOKUPS, countNanos / 1000.0 / LOOKUPS, memoryNanos / 1000.0 / LOOKUPS);
+
+        assertTrue(countChecksum >= memoryChecksum, "COUNT учитывает и запросы с ошибкой");
+        assertTrue(memoryNanos < countNanos,
+                "счетчик в памяти " + memoryNanos + " нс, COUNT " + countNanos + " нс");
+    }
+
+    private long countQuery(long[] userIds, LocalDateTime startOfDay, LocalDateTime endOfDay) {
+        long sum = 0;
+        for (long userId : userIds) {
+            sum += jdbcTemplate.queryForObject(OLD_COUNT_SQL, Integer.class, userId, startOfDay, endOfDay);
+        }
+        return sum;
+    }
+
+    private long inMemory(long[] userIds) {
+        long sum = 0;
+        for (long userId : userIds) {
+            sum += dailyQuotaService.getUsedToday(userId + TELEGRAM_ID_OFFSET);
+        }
+        return sum;
+    }
+}
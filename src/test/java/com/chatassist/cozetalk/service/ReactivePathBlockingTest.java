@@ -0,0 +1,193 @@
+package com.chatassist.cozetalk.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.chatassist.cozetalk.client.CozeApiClient;
+import com.chatassist.cozetalk.client.CozeCallScheduler;
+import com.chatassist.cozetalk.client.CozeConcurrencyLimiter;
+import com.chatassist.cozetalk.client.YooKassaApiClient;
+import com.chatassist.cozetalk.domain.Payment;
+import com.chatassist.cozetalk.domain.User;
+import com.chatassist.cozetalk.domain.dto.Amount;
+import com.chatassist.cozetalk.domain.dto.CozeResponse;
+import com.chatassist.cozetalk.domain.dto.PaymentResponse;
+import com.chatassist.cozetalk.domain.dto.SubscriptionSnapshot;
+import com.chatassist.cozetalk.domain.dto.UpdateContext;
+import com.chatassist.cozetalk.domain.enums.TariffPlan;
+import com.chatassist.cozetalk.exception.CozeApiException;
+import com.chatassist.cozetalk.repository.PaymentRepository;
+import com.chatassist.cozetalk.repository.SubscriptionRepository;
+import com.chatassist.cozetalk.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Проверка BlockHound: обработка запроса к нейромодели и создание платежа, запущенные
+ * в потоках Reactor (parallel, как event loop Netty), не выполняют блокирующих вызовов.
+ * Заглушки репозиториев засыпают, как JDBC, поэтому обращение к ним из потока Reactor
+ * завершилось бы ошибкой {@link BlockingOperationError}.
+ */
+class ReactivePathBlockingTest {
+
+    private static final long TELEGRAM_ID = 42L;
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final Scheduler jdbcScheduler = Schedulers.boundedElastic();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CozeApiClient cozeApiClient;
+    private CozeService cozeService;
+    private SubscriptionService subscriptionService;
+    private SubscriptionRepository subscriptionRepository;
+
+    @BeforeAll
+    static void installBlockHound() {
+        BlockHound.install(builder -> builder
+                // Запись логов в консоль под блокировкой Logback, как в BlockHoundConfig
+                .allowBlockingCallsInside("ch.qos.logback.core.OutputStreamAppender", "writeBytes"));
+    }
+
+    @BeforeEach
+    void setUp() {
+        cozeApiClient = mock(CozeApiClient.class);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        // Запись журнала не запускается: изменения остаются в очереди
+        RequestLogWriter requestLogWriter = new RequestLogWriter(jdbcTemplate,
+                new UsageStatisticsAggregator(jdbcTemplate, meterRegistry, 10),
+                new ResponseTextCompressor(jdbcTemplate, meterRegistry, true, 500),
+                meterRegistry, 1000, 100, 200, 5);
+        CozeCallScheduler cozeCallScheduler = new CozeCallScheduler(
+                new CozeConcurrencyLimiter(meterRegistry, 20, 2, 200, 0.9, 20_000),
+                meterRegistry, 1, 3, 8, 1000);
+        cozeService = new CozeService(cozeApiClient, requestLogWriter,
+                new CozeResponseCache(meterRegistry, true, 1, 60),
+                new CozeRequestCoalescer(meterRegistry), cozeCallScheduler);
+
+        subscriptionRepository = mock(SubscriptionRepository.class);
+        DailyQuotaService dailyQuotaService = new DailyQuotaService(jdbcTemplate, meterRegistry, 100);
+        dailyQuotaService.rebuild();
+        subscriptionService = new SubscriptionService(subscriptionRepository, mock(UserRepository.class),
+                dailyQuotaService, mock(SubscriptionSnapshotCache.class), mock(ApplicationEventPublisher.class),
+                jdbcScheduler);
+    }
+
+    @Test
+    void blockHoundDetectsBlockingOnParallelThreads() {
+        Mono<Void> blocking = Mono.<Void>fromRunnable(ReactivePathBlockingTest::sleepLikeJdbc)
+                .subscribeOn(Schedulers.parallel());
+
+        Throwable error = assertThrows(RuntimeException.class, () -> blocking.block(TIMEOUT));
+        assertInstanceOf(BlockingOperationError.class, error.getCause() != null ? error.getCause() : error);
+    }
+
+    @Test
+    void processQueryDoesNotBlockReactorThreads() {
+        CozeResponse response = new CozeResponse();
+        response.setContent("Ответ");
+        // Ответ приходит в потоке parallel, как из WebClient в потоке Netty
+        when(cozeApiClient.sendMessage(any())).thenReturn(Mono.just(response).delayElement(Duration.ofMillis(10)));
+
+        CozeResponse result = Mono.defer(() -> cozeService.processQuery(context(), "Вопрос", reservation()))
+                .subscribeOn(Schedulers.parallel())
+                .block(TIMEOUT);
+
+        assertEquals("Ответ", result.getContent());
+    }
+
+    @Test
+    void processQueryRefundsOffReactorThreadsOnError() throws Exception {
+        CountDownLatch refunded = new CountDownLatch(1);
+        when(subscriptionRepository.incrementRemainingRequests(anyLong())).thenAnswer(invocation -> {
+            sleepLikeJdbc();
+            refunded.countDown();
+            return 1;
+        });
+        when(cozeApiClient.sendMessage(any())).thenReturn(Mono.delay(Duration.ofMillis(10))
+                .then(Mono.error(new IllegalStateException("Coze API недоступен"))));
+
+        Mono<CozeResponse> query = Mono.defer(() -> cozeService.processQuery(context(), "Другой вопрос", reservation()))
+                .subscribeOn(Schedulers.parallel());
+
+        CozeApiException error = assertThrows(CozeApiException.class, () -> query.block(TIMEOUT));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertTrue(refunded.await(10, TimeUnit.SECONDS), "запрос не возвращен в остаток подписки");
+    }
+
+    @Test
+    void createPaymentSavesOffReactorThreads() {
+        YooKassaApiClient yooKassaApiClient = mock(YooKassaApiClient.class);
+        PaymentRepository paymentRepository = mock(PaymentRepository.class);
+        AtomicReference<String> saveThread = new AtomicReference<>();
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> {
+            sleepLikeJdbc();
+            saveThread.set(Thread.currentThread().getName());
+            return invocation.getArgument(0);
+        });
+
+        PaymentResponse response = new PaymentResponse();
+        response.setId("payment-1");
+        response.setAmount(new Amount(BigDecimal.valueOf(990), "RUB"));
+        when(yooKassaApiClient.createPayment(any())).thenReturn(Mono.just(response).delayElement(Duration.ofMillis(10)));
+
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        PaymentService paymentService = new PaymentService(paymentRepository, yooKassaApiClient, subscriptionService,
+                new TransactionTemplate(transactionManager), jdbcScheduler);
+
+        User user = new User();
+        user.setTelegramId(TELEGRAM_ID);
+        PaymentResponse result = Mono.defer(() -> paymentService.createPayment(user, TariffPlan.ROMANTIC,
+                        "https://t.me/bot"))
+                .subscribeOn(Schedulers.parallel())
+                .block(TIMEOUT);
+
+        assertEquals("payment-1", result.getId());
+        assertTrue(saveThread.get().startsWith("boundedElastic"), "платеж сохранен в потоке " + saveThread.get());
+    }
+
+    private QuotaReservation reservation() {
+        return new QuotaReservation(TELEGRAM_ID, LocalDate.now(), subscriptionService);
+    }
+
+    private static UpdateContext context() {
+        return new UpdateContext(TELEGRAM_ID, TELEGRAM_ID,
+                new SubscriptionSnapshot(1L, TariffPlan.ROMANTIC, LocalDateTime.now().plusDays(1), 50), 0);
+    }
+
+    private static void sleepLikeJdbc() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.chatassist.cozetalk.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.chatassist.cozetalk.domain.dto.RequestLogSearchHit;
+import com.chatassist.cozetalk.domain.dto.RequestLogSearchPage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Проверка SQL и параметров {@link RequestLogSearchService}: порядок параметров совпадает
+ * с порядком условий, период по умолчанию и наибольший период, размер страницы и ключ следующей страницы.
+ * Запрос не выполняется: JdbcTemplate запоминает SQL и параметры и возвращает заданные записи.
+ */
+class RequestLogSearchServiceTest {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int DEFAULT_PERIOD_DAYS = 30;
+    private static final int MAX_PERIOD_DAYS = 92;
+    private static final String HEADLINE_OPTIONS =
+            "StartSel=<mark>, StopSel=</mark>, MaxWords=25, MinWords=8, MaxFragments=2, FragmentDelimiter=\" … \"";
+    private static final LocalDateTime TO = LocalDateTime.of(2024, 6, 1, 0, 0);
+
+    private CapturingJdbcTemplate jdbcTemplate;
+    private RequestLogSearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new CapturingJdbcTemplate();
+        searchService = new RequestLogSearchService(jdbcTemplate, new SimpleMeterRegistry(),
+                MAX_PAGE_SIZE, DEFAULT_PERIOD_DAYS, MAX_PERIOD_DAYS);
+    }
+
+    @Test
+    void defaultPeriodEndsNowAndHasNoUpperBound() {
+        LocalDateTime before = LocalDateTime.now();
+        searchService.search("оплата", null, null, null, null, null, null, 20);
+        LocalDateTime after = LocalDateTime.now();
+
+        String filter = filter(jdbcTemplate.sql);
+        assertEquals("r.search_vector @@ q.query AND r.request_time >= ?", filter);
+
+        List<Object> args = jdbcTemplate.args;
+        assertEquals(4, args.size());
+        assertEquals(HEADLINE_OPTIONS, args.get(0));
+        assertEquals("оплата", args.get(1));
+        LocalDateTime periodStart = ((Timestamp) args.get(2)).toLocalDateTime();
+        assertFalse(periodStart.isBefore(before.minusDays(DEFAULT_PERIOD_DAYS)), periodStart.toString());
+        assertFalse(periodStart.isAfter(after.minusDays(DEFAULT_PERIOD_DAYS)), periodStart.toString());
+        assertEquals(21, args.get(3));
+    }
+
+    @Test
+    void defaultPeriodStartIsCountedFromPeriodEnd() {
+        searchService.search("оплата", null, null, null, TO, null, null, 20);
+
+        assertEquals("r.search_vector @@ q.query AND r.request_time >= ? AND r.request_time < ?",
+                filter(jdbcTemplate.sql));
+        assertEquals(List.of(HEADLINE_OPTIONS, "оплата", Timestamp.valueOf(TO.minusDays(DEFAULT_PERIOD_DAYS)),
+                Timestamp.valueOf(TO), 21), jdbcTemplate.args);
+    }
+
+    @Test
+    void allFiltersAppearInParameterOrder() {
+        LocalDateTime from = TO.minusDays(7);
+        LocalDateTime beforeTime = TO.minusDays(1);
+
+        searchService.search("\"не работает\" -оплата", 42L, "ERROR", from, TO, beforeTime, 500L, 10);
+
+        assertEquals("r.search_vector @@ q.query"
+                        + " AND r.user_id = (SELECT id FROM users WHERE telegram_id = ?)"
+                        + " AND r.status = ?"
+                        + " AND r.request_time >= ?"
+                        + " AND r.request_time < ?"
+                        + " AND (r.request_time, r.id) < (?, ?)",
+                filter(jdbcTemplate.sql));
+        assertEquals(List.of(HEADLINE_OPTIONS, "\"не работает\" -оплата", 42L, "ERROR", Timestamp.valueOf(from),
+                        Timestamp.valueOf(TO), Timestamp.valueOf(beforeTime), 500L, 11),
+                jdbcTemplate.args);
+        // Текст запроса передается только параметром
+        assertFalse(jdbcTemplate.sql.contains("не работает"));
+        assertEquals(countPlaceholders(jdbcTemplate.sql), jdbcTemplate.args.size());
+    }
+
+    @Test
+    void beforeTimeWithoutIdUsesTimeOnly() {
+        LocalDateTime beforeTime = TO.minusHours(1);
+
+        searchService.search("оплата", null, null, TO.minusDays(1), TO, beforeTime, null, 10);
+
+        assertTrue(filter(jdbcTemplate.sql).endsWith(" AND r.request_time < ? AND r.request_time < ?"),
+                jdbcTemplate.sql);
+        assertEquals(Timestamp.valueOf(beforeTime), jdbcTemplate.args.get(jdbcTemplate.args.size() - 2));
+        assertEquals(countPlaceholders(jdbcTemplate.sql), jdbcTemplate.args.size());
+    }
+
+    @Test
+    void maxPeriodIsAcceptedAndLongerPeriodIsRejected() {
+        searchService.search("оплата", null, null, TO.minusDays(MAX_PERIOD_DAYS), TO, null, null, 10);
+        assertEquals(Timestamp.valueOf(TO.minusDays(MAX_PERIOD_DAYS)), jdbcTemplate.args.get(2));
+
+        jdbcTemplate.sql = null;
+        IllegalArgumentException tooLong = assertThrows(IllegalArgumentException.class, () -> searchService.search(
+                "оплата", null, null, TO.minusDays(MAX_PERIOD_DAYS).minusSeconds(1), TO, null, null, 10));
+        assertTrue(tooLong.getMessage().contains(String.valueOf(MAX_PERIOD_DAYS)), tooLong.getMessage());
+        // Без конца периода наибольший период отсчитывается от текущего момента
+        assertThrows(IllegalArgumentException.class, () -> searchService.search(
+                "оплата", null, null, LocalDateTime.now().minusDays(MAX_PERIOD_DAYS + 1), null, null, null, 10));
+        assertNull(jdbcTemplate.sql, "запрос выполнен для недопустимого периода");
+    }
+
+    @Test
+    void emptyOrReversedPeriodIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> searchService.search("оплата", null, null, TO, TO, null, null, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> searchService.search("оплата", null, null, TO.plusDays(1), TO, null, null, 10));
+        assertNull(jdbcTemplate.sql);
+    }
+
+    @Test
+    void pageSizeIsClampedAndExtraRowGivesNextPageKey() {
+        searchService.search("оплата", null, null, null, TO, null, null, 10_000);
+        assertEquals(MAX_PAGE_SIZE + 1, lastArg());
+        searchService.search("оплата", null, null, null, TO, null, null, 0);
+        assertEquals(2, lastArg());
+
+        jdbcTemplate.hits = hits(4);
+        RequestLogSearchPage page = searchService.search("оплата", null, null, null, TO, null, null, 3);
+        assertEquals(3, page.items().size());
+        assertEquals(3L, page.nextBeforeId());
+        assertEquals(page.items().get(2).requestTime(), page.nextBeforeTime());
+
+        jdbcTemplate.hits = hits(3);
+        RequestLogSearchPage lastPage = searchService.search("оплата", null, null, null, TO, null, null, 3);
+        assertEquals(3, lastPage.items().size());
+        assertNull(lastPage.nextBeforeId());
+        assertNull(lastPage.nextBeforeTime());
+    }
+
+    private Object lastArg() {
+        return jdbcTemplate.args.get(jdbcTemplate.args.size() - 1);
+    }
+
+    private static List<RequestLogSearchHit> hits(int count) {
+        List<RequestLogSearchHit> hits = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            hits.add(new RequestLogSearchHit((long) i, 42L, TO.minusMinutes(i), "SUCCESS", 100, "<mark>оплата</mark>"));
+        }
+        return hits;
+    }
+
+    /**
+     * Условия внутреннего запроса между WHERE и ORDER BY.
+     */
+    private static String filter(String sql) {
+        int start = sql.indexOf(" WHERE ") + " WHERE ".length();
+        return sql.substring(start, sql.indexOf(" ORDER BY", start));
+    }
+
+    // Знаки вопроса в строковых литералах SQL не встречаются
+    private static long countPlaceholders(String sql) {
+        return sql.chars().filter(c -> c == '?').count();
+    }
+
+    private static final class CapturingJdbcTemplate extends JdbcTemplate {
+
+        private String sql;
+        private List<Object> args;
+        private List<RequestLogSearchHit> hits = List.of();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            this.sql = sql;
+            this.args = List.of(args);
+            return (List<T>) hits;
+        }
+    }
+}
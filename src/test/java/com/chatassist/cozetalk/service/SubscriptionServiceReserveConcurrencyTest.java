@@ -0,0 +1,180 @@
+package com.chatassist.cozetalk.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.chatassist.cozetalk.domain.dto.SubscriptionSnapshot;
+import com.chatassist.cozetalk.domain.dto.UpdateContext;
+import com.chatassist.cozetalk.domain.enums.TariffPlan;
+import com.chatassist.cozetalk.repository.SubscriptionRepository;
+import com.chatassist.cozetalk.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Нагрузочная проверка {@link SubscriptionService#reserveRequest}: дневной лимит в памяти,
+ * условное списание остатка подписки и возврат через {@link QuotaReservation}
+ * при большем числе потоков, чем свободных запросов.
+ * Остаток подписки моделируется атомарным счетчиком с тем же условием, что и UPDATE
+ * в {@link SubscriptionRepository#decrementRemainingRequests}.
+ */
+class SubscriptionServiceReserveConcurrencyTest {
+
+    private static final int THREADS = 32;
+    private static final int ATTEMPTS_PER_THREAD = 50;
+    private static final long TELEGRAM_ID = 42L;
+
+    private final AtomicInteger remainingRequests = new AtomicInteger();
+    private DailyQuotaService dailyQuotaService;
+    private SubscriptionService subscriptionService;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        dailyQuotaService = new DailyQuotaService(mock(JdbcTemplate.class), meterRegistry, 100);
+        dailyQuotaService.rebuild();
+
+        SubscriptionRepository subscriptionRepository = mock(SubscriptionRepository.class);
+        // remaining_requests > 0 проверяется и уменьшается одним оператором
+        when(subscriptionRepository.decrementRemainingRequests(anyLong())).thenAnswer(invocation -> {
+            int current;
+            do {
+                current = remainingRequests.get();
+                if (current <= 0) {
+                    return 0;
+                }
+            } while (!remainingRequests.compareAndSet(current, current - 1));
+            return 1;
+        });
+        when(subscriptionRepository.incrementRemainingRequests(anyLong()))
+                .thenAnswer(invocation -> {
+                    remainingRequests.incrementAndGet();
+                    return 1;
+                });
+
+        subscriptionService = new SubscriptionService(subscriptionRepository, mock(UserRepository.class),
+                dailyQuotaService, mock(SubscriptionSnapshotCache.class), mock(ApplicationEventPublisher.class),
+                Schedulers.immediate());
+    }
+
+    @Test
+    void dailyLimitBoundsReservationsWithRefunds() throws Exception {
+        int dailyLimit = 30;
+        remainingRequests.set(100);
+
+        int committed = reserveConcurrently(dailyLimit);
+        committed += drain(dailyLimit);
+
+        assertEquals(dailyLimit, committed);
+        assertEquals(dailyLimit, dailyQuotaService.getUsedToday(TELEGRAM_ID));
+        assertEquals(100 - dailyLimit, remainingRequests.get());
+    }
+
+    @Test
+    void subscriptionRemainderBoundsReservationsWithRefunds() throws Exception {
+        int dailyLimit = 30;
+        remainingRequests.set(20);
+
+        int committed = reserveConcurrently(dailyLimit);
+        committed += drain(dailyLimit);
+
+        // Запрос, не списанный с остатка подписки, не должен остаться в дневном счетчике
+        assertEquals(20, committed);
+        assertEquals(20, dailyQuotaService.getUsedToday(TELEGRAM_ID));
+        assertEquals(0, remainingRequests.get());
+    }
+
+    /**
+     * Каждый поток резервирует запросы, возвращая каждый второй резерв, как при ошибке нейромодели.
+     *
+     * @return Количество подтвержденных резервов
+     */
+    private int reserveConcurrently(int dailyLimit) throws Exception {
+        AtomicInteger committed = new AtomicInteger();
+        AtomicInteger reserved = new AtomicInteger();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                Optional<QuotaReservation> reservation = subscriptionService.reserveRequest(context(dailyLimit));
+                if (reservation.isEmpty()) {
+                    continue;
+                }
+                if (reserved.incrementAndGet() % 2 == 0) {
+                    reservation.get().refund();
+                    // Повторный возврат не должен вернуть запрос второй раз
+                    reservation.get().refund();
+                } else {
+                    reservation.get().commit();
+                    reservation.get().refund();
+                    committed.incrementAndGet();
+                }
+            }
+        });
+
+        assertTrue(THREADS * ATTEMPTS_PER_THREAD > reserved.get(), "потоков и попыток больше, чем запросов");
+        assertEquals(committed.get(), dailyQuotaService.getUsedToday(TELEGRAM_ID));
+        return committed.get();
+    }
+
+    /**
+     * Подтверждает резервы, пока они выдаются.
+     *
+     * @return Количество подтвержденных резервов
+     */
+    private int drain(int dailyLimit) {
+        int committed = 0;
+        Optional<QuotaReservation> reservation;
+        while ((reservation = subscriptionService.reserveRequest(context(dailyLimit))).isPresent()) {
+            reservation.get().commit();
+            committed++;
+        }
+        return committed;
+    }
+
+    private static UpdateContext context(int dailyLimit) {
+        SubscriptionSnapshot subscription = new SubscriptionSnapshot(1L, TariffPlan.ROMANTIC,
+                LocalDateTime.now().plusDays(1), dailyLimit);
+        return new UpdateContext(TELEGRAM_ID, TELEGRAM_ID, subscription, 0);
+    }
+
+    private static void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.chatassist.cozetalk.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Сравнение {@link UsageStatisticsAggregator} с моделью удаленного триггера update_usage_statistics
+ * (создан в V2, удален в V8). Один и тот же поток запросов проигрывается через агрегатор
+ * и через {@link TriggerModel}; итоги дня в usage_statistics должны совпасть.
+ * Тест проверяет совпадение с моделью, а не с самим триггером: модель написана на Java
+ * по тексту функции из V2, а PL/pgSQL без PostgreSQL выполнить нельзя. Ошибка в переносе
+ * логики триггера в модель этим тестом не обнаруживается.
+ */
+class UsageStatisticsAggregatorReplayTest {
+
+    private static final int REQUESTS = 20_000;
+    private static final int USERS = 3_000;
+
+    @Test
+    void replayMatchesTriggerModelStatistics() {
+        RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate();
+        UsageStatisticsAggregator aggregator = new UsageStatisticsAggregator(jdbcTemplate, new SimpleMeterRegistry(), 14);
+        TriggerModel trigger = new TriggerModel();
+
+        Random random = new Random(20240117L);
+        for (int i = 0; i < REQUESTS; i++) {
+            long userId = 1 + random.nextInt(USERS);
+            // Первая строка дня не ошибочная: см. TriggerModel.insert
+            String status = i > 0 && random.nextInt(20) == 0 ? "ERROR" : "SUCCESS";
+            int processTime = 50 + random.nextInt(5_000);
+
+            aggregator.recordRequest(userId);
+            aggregator.recordCompletion(status, processTime);
+            trigger.insert(userId, status, processTime);
+        }
+        aggregator.flush();
+
+        Object[] saved = jdbcTemplate.lastArgs;
+        assertNotNull(saved, "статистика не сохранена");
+        assertEquals(Date.valueOf(LocalDate.now()), saved[0]);
+        assertEquals(trigger.totalRequests, saved[1]);
+        assertEquals(trigger.avgProcessTime(), saved[3]);
+        assertEquals(trigger.errorCount, saved[4]);
+
+        // Уникальные пользователи оцениваются HyperLogLog с точностью 14 (ошибка около 0.8%)
+        int uniqueUsers = (int) saved[2];
+        int expected = trigger.users.size();
+        assertTrue(Math.abs(uniqueUsers - expected) <= expected * 0.03,
+                "уникальных пользователей " + uniqueUsers + ", ожидалось около " + expected);
+    }
+
+    @Test
+    void repeatedFlushDoesNotChangeTotals() {
+        RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate();
+        UsageStatisticsAggregator aggregator = new UsageStatisticsAggregator(jdbcTemplate, new SimpleMeterRegistry(), 14);
+
+        aggregator.recordRequest(1L);
+        aggregator.recordCompletion("SUCCESS", 100);
+        aggregator.flush();
+        Object[] first = jdbcTemplate.lastArgs;
+        aggregator.flush();
+
+        // В отличие от инкрементов триггера, повторное сохранение записывает те же итоги
+        assertEquals(List.of(first), List.of(jdbcTemplate.lastArgs));
+    }
+
+    /**
+     * Модель триггера update_usage_statistics на Java: для каждой вставленной строки повторяет
+     * действия функции из V2, включая пропуск ошибки первого запроса дня. Сам SQL не выполняется.
+     */
+    private static final class TriggerModel {
+        private final Set<Long> users = new HashSet<>();
+        private int totalRequests;
+        private int errorCount;
+        private long processTimeSum;
+        private long processTimeCount;
+
+        private void insert(long userId, String status, Integer processTime) {
+            // UPDATE error_count выполнялся до INSERT ... ON CONFLICT и не находил строки дня,
+            // если ошибочным был первый запрос дня
+            if ("ERROR".equals(status) && totalRequests > 0) {
+                errorCount++;
+            }
+            // SELECT COUNT(DISTINCT user_id) и AVG(process_time) с учетом новой строки
+            users.add(userId);
+            if (processTime != null) {
+                processTimeSum += processTime;
+                processTimeCount++;
+            }
+            totalRequests++;
+        }
+
+        /**
+         * AVG(process_time) приводится к INTEGER с округлением, как при присваивании в PL/pgSQL.
+         */
+        private Integer avgProcessTime() {
+            return processTimeCount > 0 ? (int) Math.round((double) processTimeSum / processTimeCount) : null;
+        }
+    }
+
+    private static final class RecordingJdbcTemplate extends JdbcTemplate {
+        private Object[] lastArgs;
+
+        @Override
+        public int update(String sql, Object... args) {
+            lastArgs = args;
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.chatassist.cozetalk.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Нагрузочная проверка атомарности {@link ConcurrentLongIntMap#incrementIfLessThan}:
+ * одновременные увеличения из многих потоков не превышают лимит.
+ */
+class ConcurrentLongIntMapTest {
+
+    private static final int THREADS = 16;
+    private static final int LIMIT = 1_000;
+
+    @Test
+    void incrementIfLessThanNeverExceedsLimitUnderContention() throws Exception {
+        // Мало ключей - все потоки конкурируют за одни и те же сегменты
+        int keys = 8;
+        ConcurrentLongIntMap map = new ConcurrentLongIntMap(4, 2);
+        AtomicIntegerArray accepted = new AtomicIntegerArray(keys);
+
+        runConcurrently(() -> {
+            for (int attempt = 0; attempt < LIMIT * 2; attempt++) {
+                for (int key = 0; key < keys; key++) {
+                    if (map.incrementIfLessThan(key + 1, LIMIT) > 0) {
+                        accepted.incrementAndGet(key);
+                    }
+                }
+            }
+        });
+
+        for (int key = 0; key < keys; key++) {
+            assertEquals(LIMIT, accepted.get(key), "принято увеличений для ключа " + (key + 1));
+            assertEquals(LIMIT, map.get(key + 1));
+        }
+    }
+
+    @Test
+    void incrementIfLessThanKeepsCountsWhileSegmentsGrow() throws Exception {
+        // Ключей больше начальной емкости - сегменты расширяются во время увеличений
+        int keys = 5_000;
+        int limit = 3;
+        ConcurrentLongIntMap map = new ConcurrentLongIntMap(16, THREADS);
+        AtomicIntegerArray accepted = new AtomicIntegerArray(keys);
+
+        runConcurrently(() -> {
+            for (int round = 0; round < limit + 2; round++) {
+                for (int key = 0; key < keys; key++) {
+                    if (map.incrementIfLessThan(key + 1, limit) > 0) {
+                        accepted.incrementAndGet(key);
+                    }
+                }
+            }
+        });
+
+        assertEquals(keys, map.size());
+        for (int key = 0; key < keys; key++) {
+            assertEquals(limit, accepted.get(key), "принято увеличений для ключа " + (key + 1));
+            assertEquals(limit, map.get(key + 1));
+        }
+    }
+
+    private static void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.chatassist.cozetalk.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.chatassist.cozetalk.domain.enums.ExportFormat;
+import com.chatassist.cozetalk.domain.enums.PaymentStatus;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Проверка {@link ExportWriter}: записанные строки разбираются обратно по RFC 4180 и как NDJSON
+ * и совпадают с исходными значениями, а данные уходят в поток вывода по мере записи.
+ */
+class ExportWriterTest {
+
+    private static final List<String> COLUMNS = List.of("id", "status", "amount", "created_at", "text");
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 3, 1, 12, 30, 15);
+
+    private static final Object[][] ROWS = {
+            {1L, PaymentStatus.SUCCEEDED, new BigDecimal("990.00"), CREATED_AT, "Обычный ответ"},
+            {2L, PaymentStatus.PENDING, new BigDecimal("1E+3"), CREATED_AT, "Запятая, \"кавычки\"\r\nи перевод строки"},
+            {3L, null, null, null, null},
+            {4, PaymentStatus.CANCELED, BigDecimal.ZERO, CREATED_AT, ""}
+    };
+
+    @Test
+    void csvRoundTrip() throws IOException {
+        String csv = write(ExportFormat.CSV, ROWS);
+
+        List<List<String>> records = parseCsv(csv);
+
+        assertEquals(ROWS.length + 1, records.size());
+        assertEquals(COLUMNS, records.get(0));
+        assertEquals(List.of("1", "SUCCEEDED", "990.00", "2024-03-01T12:30:15", "Обычный ответ"), records.get(1));
+        assertEquals(List.of("2", "PENDING", "1000", "2024-03-01T12:30:15",
+                "Запятая, \"кавычки\"\r\nи перевод строки"), records.get(2));
+        // Пустое значение и null в CSV неразличимы
+        assertEquals(List.of("3", "", "", "", ""), records.get(3));
+        assertEquals(List.of("4", "CANCELED", "0", "2024-03-01T12:30:15", ""), records.get(4));
+    }
+
+    @Test
+    void csvNeutralizesFormulasButNotNumbers() throws IOException {
+        String csv = write(ExportFormat.CSV, new Object[][]{
+                {-5L, "=HYPERLINK(\"http://example.com\")", new BigDecimal("-1.50"), null, "@SUM(A1)"},
+                {6L, "+1", null, null, "-обычный текст"}
+        });
+
+        List<List<String>> records = parseCsv(csv);
+
+        assertEquals(List.of("-5", "'=HYPERLINK(\"http://example.com\")", "-1.50", "", "'@SUM(A1)"), records.get(1));
+        assertEquals(List.of("6", "'+1", "", "", "'-обычный текст"), records.get(2));
+    }
+
+    @Test
+    void ndjsonRoundTrip() throws IOException {
+        String ndjson = write(ExportFormat.NDJSON, ROWS);
+
+        String[] lines = ndjson.split("\n");
+        assertEquals(ROWS.length, lines.length);
+        assertTrue(ndjson.endsWith("\n"));
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        for (int i = 0; i < ROWS.length; i++) {
+            JsonNode node = objectMapper.readTree(lines[i]);
+            assertEquals(COLUMNS, fieldNames(node), lines[i]);
+            Object[] row = ROWS[i];
+
+            assertTrue(node.get("id").isIntegralNumber());
+            assertEquals(((Number) row[0]).longValue(), node.get("id").asLong());
+            assertEquals(row[1] == null ? null : ((PaymentStatus) row[1]).name(), textOrNull(node.get("status")));
+            if (row[2] == null) {
+                assertTrue(node.get("amount").isNull());
+            } else {
+                assertEquals(0, ((BigDecimal) row[2]).compareTo(node.get("amount").decimalValue()));
+            }
+            assertEquals(row[3] == null ? null : row[3].toString(), textOrNull(node.get("created_at")));
+            assertEquals(row[4], textOrNull(node.get("text")));
+        }
+    }
+
+    @Test
+    void rowsReachOutputStreamBeforeClose() throws IOException {
+        for (ExportFormat format : ExportFormat.values()) {
+            CountingOutputStream out = new CountingOutputStream();
+            String text = "x".repeat(1000);
+            long written = 0;
+
+            try (ExportWriter writer = ExportWriter.create(format, out, COLUMNS)) {
+                for (long id = 0; id < 10_000; id++) {
+                    writer.writeRow(new Object[]{id, PaymentStatus.SUCCEEDED, BigDecimal.ONE, CREATED_AT, text});
+                    written += text.length();
+                }
+                // В памяти остается не больше буфера записи, остальное уже передано в поток
+                assertTrue(out.count >= written - 128 * 1024,
+                        format + ": передано " + out.count + " байт из " + written);
+                assertFalse(out.closed, format + ": поток закрыт до окончания выгрузки");
+            }
+            assertTrue(out.closed, format + ": поток не закрыт вместе с выгрузкой");
+        }
+    }
+
+    private static String write(ExportFormat format, Object[][] rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ExportWriter writer = ExportWriter.create(format, out, COLUMNS)) {
+            for (Object[] row : rows) {
+                writer.writeRow(row);
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Разбор CSV по RFC 4180: записи разделяются CRLF, значения в кавычках могут содержать
+     * запятые, переводы строк и удвоенные кавычки.
+     */
+    private static List<List<String>> parseCsv(String csv) {
+        List<List<String>> records = new ArrayList<>();
+        List<String> record = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (i < csv.length()) {
+            char c = csv.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < csv.length() && csv.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i += 2;
+                    continue;
+                }
+                if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+                i++;
+            } else if (c == '"') {
+                assertEquals(0, value.length(), "кавычка внутри значения без кавычек");
+                quoted = true;
+                i++;
+            } else if (c == ',') {
+                record.add(value.toString());
+                value.setLength(0);
+                i++;
+            } else if (c == '\r' && i + 1 < csv.length() && csv.charAt(i + 1) == '\n') {
+                record.add(value.toString());
+                value.setLength(0);
+                records.add(record);
+                record = new ArrayList<>();
+                i += 2;
+            } else {
+                value.append(c);
+                i++;
+            }
+        }
+        assertTrue(!quoted && record.isEmpty() && value.length() == 0, "последняя запись не завершена CRLF");
+        return records;
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    private static String textOrNull(JsonNode node) {
+        return node.isNull() ? null : node.asText();
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+        private boolean closed;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}